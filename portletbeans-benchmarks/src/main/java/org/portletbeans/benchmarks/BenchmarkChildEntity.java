@@ -0,0 +1,37 @@
+package org.portletbeans.benchmarks;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+
+/**
+ * A nested entity of the {@link BenchmarkEntity}.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+@NoArgsConstructor
+public class BenchmarkChildEntity {
+
+	private String name;
+
+	private long value;
+
+	/**
+	 * Creates a new instance of {@link BenchmarkChildEntity}.
+	 *
+	 * @param name
+	 *            the name of the entity
+	 * @param value
+	 *            the value of the entity
+	 */
+	public BenchmarkChildEntity(final String name, final long value) {
+		this.name = name;
+		this.value = value;
+	}
+
+}
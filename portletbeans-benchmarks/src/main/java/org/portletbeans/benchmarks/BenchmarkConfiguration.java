@@ -0,0 +1,67 @@
+package org.portletbeans.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.serializer.CompactSerializable;
+
+/**
+ * A serializable configuration, as stored by the {@link org.portletbeans.preferences.SerializableFieldHandler}.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@CompactSerializable
+@Getter
+@Setter
+public class BenchmarkConfiguration implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Creates a configuration with the given count of entries.
+	 *
+	 * @param entries
+	 *            the count of entries in the list and in the map
+	 * @return the new configuration
+	 */
+	public static BenchmarkConfiguration create(final int entries) {
+		final BenchmarkConfiguration configuration = new BenchmarkConfiguration();
+		configuration.setTitle("Benchmark configuration");
+		configuration.setUnit(TimeUnit.SECONDS);
+		configuration.setModified(new Date(0));
+		configuration.setWeights(new double[entries]);
+		for (int i = 0; i < entries; i++) {
+			configuration.getNames().add("name" + i);
+			configuration.getLimits().put("limit" + i, i * 100);
+			configuration.getWeights()[i] = i / 10.0;
+			final BenchmarkConfiguration child = new BenchmarkConfiguration();
+			child.setTitle("child" + i);
+			configuration.getChildren().add(child);
+		}
+		return configuration;
+	}
+
+	private String title;
+
+	private TimeUnit unit;
+
+	private Date modified;
+
+	private double[] weights;
+
+	private final List<String> names = new ArrayList<>();
+
+	private final Map<String, Integer> limits = new LinkedHashMap<>();
+
+	private final List<BenchmarkConfiguration> children = new ArrayList<>();
+
+}
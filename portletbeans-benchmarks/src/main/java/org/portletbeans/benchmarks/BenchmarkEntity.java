@@ -0,0 +1,53 @@
+package org.portletbeans.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+
+/**
+ * A typical preference bean for the benchmarks, with simple fields, a list and nested entities.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class BenchmarkEntity {
+
+	private String title;
+
+	private int count;
+
+	private boolean enabled;
+
+	private final List<String> tags = new ArrayList<>();
+
+	private final List<BenchmarkChildEntity> children = new ArrayList<>();
+
+	private BenchmarkChildEntity main;
+
+	/**
+	 * Creates an entity with some content.
+	 *
+	 * @param children
+	 *            the count of tags and children
+	 * @return the created entity
+	 */
+	public static BenchmarkEntity create(final int children) {
+		final BenchmarkEntity entity = new BenchmarkEntity();
+		entity.setTitle("Benchmark");
+		entity.setCount(children);
+		entity.setEnabled(true);
+		entity.setMain(new BenchmarkChildEntity("main", -1));
+		for (int i = 0; i < children; i++) {
+			entity.getTags().add("tag" + i);
+			entity.getChildren().add(new BenchmarkChildEntity("child" + i, i));
+		}
+		return entity;
+	}
+
+}
@@ -0,0 +1,159 @@
+package org.portletbeans.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.portlet.ReadOnlyException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceEntityHandler;
+import org.portletbeans.preferences.PreferenceFieldRegistry;
+
+/**
+ * Measures the instantiation of nested entities with a {@link PostConstruct} method.
+ *
+ * Compares the {@link PreferenceEntityHandler} with the former reflective instantiation and with a plain {@code new}
+ * and loads a list with all entities.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EntityListBenchmark {
+
+	/**
+	 * An entity with a list of nested entities.
+	 */
+	@PreferenceEntity
+	public static class ContainerEntity {
+
+		private final List<ElementEntity> elements = new ArrayList<>();
+
+	}
+
+	/**
+	 * A nested entity with an initializer.
+	 */
+	@PreferenceEntity
+	public static class ElementEntity {
+
+		private int value;
+
+		private transient boolean initialized;
+
+		@PostConstruct
+		private void init() {
+			this.initialized = true;
+		}
+
+	}
+
+	/** The count of nested entities. */
+	@Param("10000")
+	private int entities;
+
+	private final BenchmarkPreferences preferences = new BenchmarkPreferences();
+
+	private PreferenceEntityHandler<ElementEntity> handler;
+
+	private Method postConstruct;
+
+	/**
+	 * Creates the entities with the {@link PreferenceEntityHandler}, which reads the (empty) fields as well.
+	 *
+	 * @param blackhole
+	 *            consumes the entities
+	 */
+	@Benchmark
+	public void instantiateHandler(final Blackhole blackhole) {
+		for (int i = 0; i < this.entities; i++) {
+			blackhole.consume(this.handler.load(this.preferences, "element", null));
+		}
+	}
+
+	/**
+	 * Creates the entities with a plain {@code new}.
+	 *
+	 * @param blackhole
+	 *            consumes the entities
+	 */
+	@Benchmark
+	public void instantiateNew(final Blackhole blackhole) {
+		for (int i = 0; i < this.entities; i++) {
+			final ElementEntity entity = new ElementEntity();
+			entity.init();
+			blackhole.consume(entity);
+		}
+	}
+
+	/**
+	 * Creates the entities like the former implementation of the {@link PreferenceEntityHandler}.
+	 *
+	 * @param blackhole
+	 *            consumes the entities
+	 * @throws ReflectiveOperationException
+	 *             never
+	 */
+	@Benchmark
+	public void instantiateReflection(final Blackhole blackhole) throws ReflectiveOperationException {
+		for (int i = 0; i < this.entities; i++) {
+			final ElementEntity entity = ElementEntity.class.newInstance();
+			this.postConstruct.setAccessible(true);
+			this.postConstruct.invoke(entity);
+			blackhole.consume(entity);
+		}
+	}
+
+	/**
+	 * Loads the list of all entities.
+	 *
+	 * @return the loaded entity
+	 */
+	@Benchmark
+	public ContainerEntity loadList() {
+		return PreferenceFieldRegistry.load(this.preferences, new ContainerEntity());
+	}
+
+	/**
+	 * Stores the list and initializes the handler.
+	 *
+	 * @throws ReadOnlyException
+	 *             never
+	 * @throws NoSuchMethodException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws ReadOnlyException, NoSuchMethodException {
+		final ContainerEntity container = new ContainerEntity();
+		for (int i = 0; i < this.entities; i++) {
+			final ElementEntity element = new ElementEntity();
+			element.value = i;
+			container.elements.add(element);
+		}
+		PreferenceFieldRegistry.store(this.preferences, container);
+		this.handler = new PreferenceEntityHandler<>(ElementEntity.class);
+		this.postConstruct = ElementEntity.class.getDeclaredMethod("init");
+	}
+
+}
@@ -0,0 +1,44 @@
+package org.portletbeans.benchmarks;
+
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.portletbeans.preferences.PreferenceFieldHandler;
+import org.portletbeans.util.ClassUtil;
+import org.reflections.Reflections;
+
+/**
+ * The former discovery of the default handlers in the static initializer of the
+ * {@link org.portletbeans.preferences.PreferenceFieldRegistry}, which scanned the whole classpath.
+ *
+ * @author Tobias Liefke
+ */
+public final class LegacyHandlerScan {
+
+	/**
+	 * The default handlers, initialized like the registry did before it used the index files.
+	 */
+	public static final Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> DEFAULT_HANDLERS = createDefaultHandlers();
+
+	private static Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> createDefaultHandlers() {
+		final Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> result = new HashMap<>();
+		final Set<Class<? extends PreferenceFieldHandler<?>>> handlerTypes = new Reflections("")
+				.getSubTypesOf((Class<PreferenceFieldHandler<?>>) (Class<?>) PreferenceFieldHandler.class);
+		for (final Class<? extends PreferenceFieldHandler<?>> handlerType : handlerTypes) {
+			if (!Modifier.isAbstract(handlerType.getModifiers())) {
+				final Class<Object> type = ClassUtil.getActualTypeBinding(handlerType, PreferenceFieldHandler.class, 0);
+				if (type != null && type != Object.class) {
+					result.put(type, handlerType);
+				}
+			}
+		}
+		return result;
+	}
+
+	private LegacyHandlerScan() {
+		// Only used for the static initializer
+	}
+
+}
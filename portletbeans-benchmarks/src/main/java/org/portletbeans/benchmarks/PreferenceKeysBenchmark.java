@@ -0,0 +1,102 @@
+package org.portletbeans.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.portlet.ReadOnlyException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.portletbeans.preferences.PreferenceFieldRegistry;
+import org.portletbeans.preferences.PreferenceKeys;
+
+/**
+ * Measures the allocations for the preference keys of a nested bean.
+ *
+ * Run with {@code -prof gc} to see the allocated bytes per operation ({@code gc.alloc.rate.norm}). Compares the
+ * former concatenation of all keys with the {@link PreferenceKeys} tables for the keys of a {@link BenchmarkEntity},
+ * and measures a complete load of that bean.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PreferenceKeysBenchmark {
+
+	private static final int CHILDREN = 10;
+
+	private final BenchmarkPreferences preferences = new BenchmarkPreferences();
+
+	/**
+	 * Builds all keys of a {@link BenchmarkEntity} with string concatenation, like the handlers did before.
+	 *
+	 * @param blackhole
+	 *            consumes the keys
+	 */
+	@Benchmark
+	public void concatenatedKeys(final Blackhole blackhole) {
+		blackhole.consume("tags" + ".length");
+		blackhole.consume("children" + ".length");
+		for (int i = 0; i < CHILDREN; i++) {
+			blackhole.consume("tags" + '.' + i);
+			final String childPrefix = "children" + '.' + i + '.';
+			blackhole.consume(childPrefix + "name");
+			blackhole.consume(childPrefix + "value");
+		}
+	}
+
+	/**
+	 * Resolves all keys of a {@link BenchmarkEntity} from the {@link PreferenceKeys} tables.
+	 *
+	 * @param blackhole
+	 *            consumes the keys
+	 */
+	@Benchmark
+	public void keyTables(final Blackhole blackhole) {
+		final PreferenceKeys tags = PreferenceKeys.of("tags");
+		final PreferenceKeys children = PreferenceKeys.of("children");
+		blackhole.consume(tags.getLengthKey());
+		blackhole.consume(children.getLengthKey());
+		for (int i = 0; i < CHILDREN; i++) {
+			blackhole.consume(tags.getElementKey(i));
+			final String childPrefix = PreferenceKeys.of(children.getElementKey(i)).getNestedPrefix();
+			blackhole.consume(PreferenceKeys.concat(childPrefix, "name"));
+			blackhole.consume(PreferenceKeys.concat(childPrefix, "value"));
+		}
+	}
+
+	/**
+	 * Loads a {@link BenchmarkEntity} with all nested entities.
+	 *
+	 * @return the loaded entity
+	 */
+	@Benchmark
+	public BenchmarkEntity loadEntity() {
+		return PreferenceFieldRegistry.load(this.preferences, new BenchmarkEntity());
+	}
+
+	/**
+	 * Stores the bean to the preferences.
+	 *
+	 * @throws ReadOnlyException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws ReadOnlyException {
+		PreferenceFieldRegistry.store(this.preferences, BenchmarkEntity.create(CHILDREN));
+	}
+
+}
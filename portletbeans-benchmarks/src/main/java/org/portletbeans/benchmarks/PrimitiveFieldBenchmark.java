@@ -0,0 +1,111 @@
+package org.portletbeans.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.portlet.ReadOnlyException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceFieldRegistry;
+
+/**
+ * Compares the load of primitive fields, which are read without boxing, with the load of the same values into wrapper
+ * fields.
+ *
+ * Run with {@code -prof gc} to see the allocated bytes per operation as well.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PrimitiveFieldBenchmark {
+
+	/**
+	 * An entity with wrapper fields.
+	 */
+	@PreferenceEntity
+	public static class BoxedEntity {
+
+		private Integer count;
+
+		private Long size;
+
+		private Double ratio;
+
+		private Boolean enabled;
+
+	}
+
+	/**
+	 * An entity with primitive fields.
+	 */
+	@PreferenceEntity
+	public static class PrimitiveEntity {
+
+		private int count;
+
+		private long size;
+
+		private double ratio;
+
+		private boolean enabled;
+
+	}
+
+	private final BenchmarkPreferences preferences = new BenchmarkPreferences();
+
+	private final BoxedEntity boxedEntity = new BoxedEntity();
+
+	private final PrimitiveEntity primitiveEntity = new PrimitiveEntity();
+
+	/**
+	 * Loads the values into the wrapper fields.
+	 *
+	 * @return the loaded entity
+	 */
+	@Benchmark
+	public BoxedEntity loadBoxed() {
+		return PreferenceFieldRegistry.load(this.preferences, this.boxedEntity);
+	}
+
+	/**
+	 * Loads the values into the primitive fields.
+	 *
+	 * @return the loaded entity
+	 */
+	@Benchmark
+	public PrimitiveEntity loadPrimitive() {
+		return PreferenceFieldRegistry.load(this.preferences, this.primitiveEntity);
+	}
+
+	/**
+	 * Fills the preferences and inspects both entities.
+	 *
+	 * @throws ReadOnlyException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws ReadOnlyException {
+		this.preferences.setValue("count", "4711");
+		this.preferences.setValue("size", "123456789");
+		this.preferences.setValue("ratio", "0.5");
+		this.preferences.setValue("enabled", "true");
+		PreferenceFieldRegistry.load(this.preferences, this.boxedEntity);
+		PreferenceFieldRegistry.load(this.preferences, this.primitiveEntity);
+	}
+
+}
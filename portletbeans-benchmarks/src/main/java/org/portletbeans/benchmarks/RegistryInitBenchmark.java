@@ -0,0 +1,95 @@
+package org.portletbeans.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time of the class initialization of the {@link org.portletbeans.preferences.PreferenceFieldRegistry}.
+ *
+ * Every invocation loads the classes with a new class loader, to measure the cold start of a portlet. The former
+ * classpath scan is measured with {@link LegacyHandlerScan}.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+public class RegistryInitBenchmark {
+
+	private URL[] classpath;
+
+	private static Class<?> initialize(final URL[] urls, final String className)
+			throws IOException, ClassNotFoundException {
+		final ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+		try (URLClassLoader classLoader = new URLClassLoader(urls, parent)) {
+			final ClassLoader previousLoader = Thread.currentThread().getContextClassLoader();
+			Thread.currentThread().setContextClassLoader(classLoader);
+			try {
+				return Class.forName(className, true, classLoader);
+			} finally {
+				Thread.currentThread().setContextClassLoader(previousLoader);
+			}
+		}
+	}
+
+	/**
+	 * Initializes the registry, which reads the index files.
+	 *
+	 * @return the initialized class
+	 * @throws Exception
+	 *             if the class is not available
+	 */
+	@Benchmark
+	public Class<?> indexedHandlers() throws Exception {
+		return initialize(this.classpath, "org.portletbeans.preferences.PreferenceFieldRegistry");
+	}
+
+	/**
+	 * Scans the classpath for handlers, like the registry did before.
+	 *
+	 * @return the initialized class
+	 * @throws Exception
+	 *             if the class is not available
+	 */
+	@Benchmark
+	public Class<?> scannedHandlers() throws Exception {
+		return initialize(this.classpath, "org.portletbeans.benchmarks.LegacyHandlerScan");
+	}
+
+	/**
+	 * Resolves the classpath of the current JVM.
+	 *
+	 * @throws MalformedURLException
+	 *             if the classpath contains an invalid entry
+	 */
+	@Setup
+	public void setUp() throws MalformedURLException {
+		final List<URL> urls = new ArrayList<>();
+		for (final String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			urls.add(new File(entry).toURI().toURL());
+		}
+		this.classpath = urls.toArray(new URL[urls.size()]);
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.portletbeans.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.portlet.ReadOnlyException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.portletbeans.preferences.PreferenceFieldRegistry;
+import org.portletbeans.util.ClassMetadataCache;
+
+/**
+ * Measures the throughput of metadata lookups from many threads.
+ *
+ * Compares the former synchronized map with the {@link ClassMetadataCache} and measures a complete
+ * {@link PreferenceFieldRegistry#load(javax.portlet.PortletPreferences, Object) load}, which looks up the metadata of
+ * every nested entity. Uses all available cores by default - run with {@code -t 1}, {@code -t 2}, {@code -t 4}, ... to
+ * see how the throughput scales with the count of threads.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class RegistryLookupBenchmark {
+
+	/**
+	 * The state of one benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private int index;
+
+		Class<?> nextClass() {
+			this.index = (this.index + 1) % CLASSES.length;
+			return CLASSES[this.index];
+		}
+
+	}
+
+	private static final Class<?>[] CLASSES = { BenchmarkEntity.class, BenchmarkChildEntity.class, String.class,
+			Integer.class, Long.class, Boolean.class, Object.class, Map.class };
+
+	private final Map<Class<?>, String> synchronizedMap = Collections.synchronizedMap(new HashMap<Class<?>, String>());
+
+	private final ClassMetadataCache<String> classMetadataCache = new ClassMetadataCache<String>() {
+
+		@Override
+		protected String compute(final Class<?> type) {
+			return type.getName();
+		}
+	};
+
+	private final BenchmarkPreferences preferences = new BenchmarkPreferences();
+
+	/**
+	 * Looks up metadata in a {@link ClassMetadataCache}.
+	 *
+	 * @param state
+	 *            the state of the current thread
+	 * @return the metadata
+	 */
+	@Benchmark
+	public String classMetadataCache(final ThreadState state) {
+		return this.classMetadataCache.get(state.nextClass());
+	}
+
+	/**
+	 * Loads an entity with nested entities, which looks up the metadata of every entity.
+	 *
+	 * @return the loaded entity
+	 */
+	@Benchmark
+	public BenchmarkEntity loadEntity() {
+		return PreferenceFieldRegistry.load(this.preferences, new BenchmarkEntity());
+	}
+
+	/**
+	 * Fills the caches and the preferences.
+	 *
+	 * @throws ReadOnlyException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws ReadOnlyException {
+		for (final Class<?> c : CLASSES) {
+			this.synchronizedMap.put(c, c.getName());
+			this.classMetadataCache.get(c);
+		}
+
+		PreferenceFieldRegistry.store(this.preferences, BenchmarkEntity.create(10));
+	}
+
+	/**
+	 * Looks up metadata in a synchronized map, like the registry did before.
+	 *
+	 * @param state
+	 *            the state of the current thread
+	 * @return the metadata
+	 */
+	@Benchmark
+	public String synchronizedMap(final ThreadState state) {
+		return this.synchronizedMap.get(state.nextClass());
+	}
+
+}
@@ -0,0 +1,95 @@
+package org.portletbeans.benchmarks;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.portletbeans.preferences.serializer.CompactPreferenceSerializer;
+import org.portletbeans.preferences.serializer.JavaPreferenceSerializer;
+import org.portletbeans.preferences.serializer.PreferenceSerializer;
+
+/**
+ * Compares the {@link PreferenceSerializer}s of the {@link org.portletbeans.preferences.SerializableFieldHandler}.
+ *
+ * Measures the time to encode and decode a {@link BenchmarkConfiguration}. The payload size of every serializer is
+ * printed during the setup of each trial.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+	/** The serializer to measure. */
+	@Param({ "java", "compact" })
+	private String serializerName;
+
+	/** The count of entries in the serialized configuration. */
+	@Param({ "10", "100" })
+	private int entries;
+
+	private PreferenceSerializer serializer;
+
+	private Serializable value;
+
+	private byte[] data;
+
+	/**
+	 * Decodes the configuration.
+	 *
+	 * @return the decoded configuration
+	 * @throws IOException
+	 *             never
+	 * @throws ClassNotFoundException
+	 *             never
+	 */
+	@Benchmark
+	public Serializable decode() throws IOException, ClassNotFoundException {
+		return this.serializer.deserialize(this.data);
+	}
+
+	/**
+	 * Encodes the configuration.
+	 *
+	 * @return the encoded configuration
+	 * @throws IOException
+	 *             never
+	 */
+	@Benchmark
+	public byte[] encode() throws IOException {
+		return this.serializer.serialize(this.value);
+	}
+
+	/**
+	 * Creates the serializer and the configuration and prints the payload size.
+	 *
+	 * @throws IOException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.serializer = "java".equals(this.serializerName) ? new JavaPreferenceSerializer()
+				: new CompactPreferenceSerializer();
+		this.value = BenchmarkConfiguration.create(this.entries);
+		this.data = this.serializer.serialize(this.value);
+		System.out.println("Payload size of " + this.serializerName + " with " + this.entries + " entries: "
+				+ this.data.length + " bytes");
+	}
+
+}
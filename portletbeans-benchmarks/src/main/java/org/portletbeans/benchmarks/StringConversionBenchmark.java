@@ -0,0 +1,102 @@
+package org.portletbeans.benchmarks;
+
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.portletbeans.util.StringConverter;
+
+/**
+ * Compares the former reflective string constructor call of the {@code ToStringFieldHandler}s with the
+ * {@link StringConverter}.
+ *
+ * Run with {@code -prof gc} to see the allocated bytes per operation as well.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class StringConversionBenchmark {
+
+	private Constructor<Integer> integerConstructor;
+
+	private Constructor<BigDecimal> decimalConstructor;
+
+	private StringConverter<Integer> integerConverter;
+
+	private StringConverter<BigDecimal> decimalConverter;
+
+	/**
+	 * Converts a decimal with the {@link StringConverter}, which uses a method handle for the constructor.
+	 *
+	 * @return the converted value
+	 */
+	@Benchmark
+	public BigDecimal decimalConverter() {
+		return this.decimalConverter.convert("12.34");
+	}
+
+	/**
+	 * Converts a decimal with {@link Constructor#newInstance(Object...)}.
+	 *
+	 * @return the converted value
+	 * @throws ReflectiveOperationException
+	 *             never
+	 */
+	@Benchmark
+	public BigDecimal decimalReflection() throws ReflectiveOperationException {
+		return this.decimalConstructor.newInstance("12.34");
+	}
+
+	/**
+	 * Converts an integer with the {@link StringConverter}, which uses {@link Integer#valueOf(String)}.
+	 *
+	 * @return the converted value
+	 */
+	@Benchmark
+	public Integer integerConverter() {
+		return this.integerConverter.convert("42");
+	}
+
+	/**
+	 * Converts an integer with {@link Constructor#newInstance(Object...)}.
+	 *
+	 * @return the converted value
+	 * @throws ReflectiveOperationException
+	 *             never
+	 */
+	@Benchmark
+	public Integer integerReflection() throws ReflectiveOperationException {
+		return this.integerConstructor.newInstance("42");
+	}
+
+	/**
+	 * Resolves the constructors and converters.
+	 *
+	 * @throws NoSuchMethodException
+	 *             never
+	 */
+	@Setup
+	public void setUp() throws NoSuchMethodException {
+		this.integerConstructor = Integer.class.getConstructor(String.class);
+		this.decimalConstructor = BigDecimal.class.getConstructor(String.class);
+		this.integerConverter = StringConverter.of(Integer.class);
+		this.decimalConverter = StringConverter.of(BigDecimal.class);
+	}
+
+}
@@ -29,4 +29,10 @@ public class ExampleBean extends AbstractMangedBean {
 
 	private boolean enabled;
 
+	@Override
+	protected boolean isCacheable() {
+		// All fields are immutable
+		return true;
+	}
+
 }
\ No newline at end of file
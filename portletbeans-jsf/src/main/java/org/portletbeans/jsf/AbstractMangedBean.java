@@ -15,12 +15,22 @@ import javax.portlet.ReadOnlyException;
 import javax.portlet.ValidatorException;
 
 import org.portletbeans.preferences.PreferenceFieldRegistry;
+import org.portletbeans.preferences.PreferencesSnapshot;
+import org.portletbeans.preferences.PreferencesView;
+import org.portletbeans.util.ClassMetadataCache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Base class for {@link ManagedBean} that reads and stores preferences.
  *
+ * Subclasses may enable a cache of the loaded values with {@link #isCacheable()}, which is useful for request scoped
+ * beans: The values of the first bean of a portlet instance are remembered and copied into all following beans of the
+ * same portlet instance, as long as the preferences are not changed.
+ *
  * @author Tobias Liefke
  */
 @Slf4j
@@ -28,18 +38,113 @@ public abstract class AbstractMangedBean implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/** The maximum count of portlet instances with cached values, per bean class. */
+	private static final int MAX_CACHED_BEANS = 1000;
+
+	/**
+	 * The loaded beans for each bean class and portlet instance, if {@link #isCacheable() cacheable}.
+	 *
+	 * The beans are attached to their class, so they don't keep the class loader of a redeployed portlet.
+	 */
+	private static final ClassMetadataCache<Cache<String, AbstractMangedBean>> CACHED_BEANS = //
+			new ClassMetadataCache<Cache<String, AbstractMangedBean>>() {
+
+				@Override
+				protected Cache<String, AbstractMangedBean> compute(final Class<?> type) {
+					return CacheBuilder.newBuilder().maximumSize(MAX_CACHED_BEANS).build();
+				}
+			};
+
+	/** Remembers the loaded values, to store only the changed values. */
+	private final PreferencesSnapshot snapshot = new PreferencesSnapshot();
+
+	private AbstractMangedBean createCachedBean() {
+		try {
+			// The copy loads all lazy values, while the preferences of this request are still valid
+			final AbstractMangedBean cachedBean = getClass().newInstance();
+			PreferenceFieldRegistry.copy(this, cachedBean);
+			cachedBean.snapshot.copyFrom(this.snapshot);
+			return cachedBean;
+		} catch (final InstantiationException | IllegalAccessException e) {
+			log.warn("Can't cache the preferences of " + getClass(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * The cached beans of the class of this bean.
+	 *
+	 * @return the cached beans, with the window ID of their portlet instance as key
+	 */
+	private Cache<String, AbstractMangedBean> getCachedBeans() {
+		return CACHED_BEANS.get(getClass());
+	}
+
+	/**
+	 * The key of the cached values of this bean.
+	 *
+	 * The window ID identifies the portlet instance - in Liferay it contains the portlet ID and the plid of the page.
+	 *
+	 * @return the key for {@link #getCachedBeans()}
+	 */
+	private String getCacheKey() {
+		return getPortletRequest().getWindowID();
+	}
+
 	/**
 	 * The portlet preferences of the current request.
 	 *
 	 * @return the portlet preferences from the faces context
 	 */
 	protected PortletPreferences getPortletPreferences() {
-		return ((PortletRequest) FacesContext.getCurrentInstance().getExternalContext().getRequest()).getPreferences();
+		return getPortletRequest().getPreferences();
+	}
+
+	private PortletRequest getPortletRequest() {
+		return (PortletRequest) FacesContext.getCurrentInstance().getExternalContext().getRequest();
 	}
 
 	@PostConstruct
 	private void init() {
-		load(getPortletPreferences());
+		// Read all preferences at once
+		final PortletPreferences preferences = new PreferencesView(getPortletPreferences());
+		if (!isCacheable()) {
+			// Remember the loaded values
+			load(this.snapshot.track(preferences));
+			return;
+		}
+
+		final String cacheKey = getCacheKey();
+		final Cache<String, AbstractMangedBean> cachedBeans = getCachedBeans();
+		final AbstractMangedBean cachedBean = cachedBeans.getIfPresent(cacheKey);
+		if (cachedBean != null && cachedBean.snapshot.matches(preferences)) {
+			// Nothing changed since the cached bean was loaded - copy its values, as this bean may modify them
+			PreferenceFieldRegistry.copy(cachedBean, this);
+			this.snapshot.copyFrom(cachedBean.snapshot);
+		} else {
+			load(this.snapshot.track(preferences));
+			final AbstractMangedBean newCachedBean = createCachedBean();
+			if (newCachedBean != null) {
+				cachedBeans.put(cacheKey, newCachedBean);
+			}
+		}
+	}
+
+	/**
+	 * Indicates that the loaded values of this bean may be cached and copied into all following beans of the same
+	 * portlet instance.
+	 *
+	 * The cached values are only used as long as all preferences read by the first bean have still the same value.
+	 * {@link #load(PortletPreferences)} is not called for a bean that is filled from the cache. Collections, maps,
+	 * nested entities, dates and arrays are {@link PreferenceFieldRegistry#copy(Object, Object) copied} into every
+	 * bean, lazy loaded values are loaded before the first bean is cached. All other values (like serialized values)
+	 * are shared between these beans. So this should only be enabled for beans that have a public default constructor
+	 * and do not modify such shared values in place.
+	 *
+	 * @return {@code true} to enable the cache, {@code false} by default
+	 */
+	protected boolean isCacheable() {
+		return false;
 	}
 
 	/**
@@ -54,12 +159,17 @@ public abstract class AbstractMangedBean implements Serializable {
 
 	/**
 	 * Stores the values of this bean into the preferences and stays in the current portlet mode.
+	 *
+	 * Only the values that were changed since the bean was loaded are written.
 	 */
 	public void store() {
 		try {
 			final PortletPreferences portletPreferences = getPortletPreferences();
-			store(portletPreferences);
+			store(this.snapshot.track(portletPreferences));
 			portletPreferences.store();
+			if (isCacheable()) {
+				getCachedBeans().invalidate(getCacheKey());
+			}
 		} catch (final ReadOnlyException | ValidatorException | IOException e) {
 			log.error("Could not store portlet preferences", e);
 		}
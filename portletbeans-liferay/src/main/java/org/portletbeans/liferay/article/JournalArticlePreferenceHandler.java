@@ -8,6 +8,7 @@ import javax.portlet.ValidatorException;
 
 import org.apache.commons.lang.StringUtils;
 import org.portletbeans.preferences.PreferenceFieldHandler;
+import org.portletbeans.preferences.PreferenceKeys;
 
 import com.liferay.portal.kernel.exception.PortalException;
 import com.liferay.portal.kernel.exception.SystemException;
@@ -35,7 +36,7 @@ public final class JournalArticlePreferenceHandler implements PreferenceFieldHan
 
 	@Override
 	public JournalArticle load(final PortletPreferences preferences, final String key, final String defaultValue) {
-		final String resourceUuid = preferences.getValue(key + RESOURCE_UUID_SUFFIX, defaultValue);
+		final String resourceUuid = preferences.getValue(PreferenceKeys.concat(key, RESOURCE_UUID_SUFFIX), defaultValue);
 
 		if (StringUtils.isEmpty(resourceUuid)) {
 			return null;
@@ -44,7 +45,7 @@ public final class JournalArticlePreferenceHandler implements PreferenceFieldHan
 		final long groupId = ServiceContextThreadLocal.getServiceContext().getScopeGroupId();
 		try {
 			JournalArticle result = null;
-			String articleId = preferences.getValue(key + ARTICLE_ID_SUFFIX, "");
+			String articleId = preferences.getValue(PreferenceKeys.concat(key, ARTICLE_ID_SUFFIX), "");
 			if (StringUtils.isNotEmpty(articleId)) {
 				try {
 					result = JournalArticleLocalServiceUtil.getLatestArticle(groupId, articleId,
@@ -61,7 +62,7 @@ public final class JournalArticlePreferenceHandler implements PreferenceFieldHan
 				result = JournalArticleLocalServiceUtil.getLatestArticle(groupId, articleId,
 						WorkflowConstants.STATUS_APPROVED);
 				try {
-					preferences.setValue(key + ARTICLE_ID_SUFFIX, articleId);
+					preferences.setValue(PreferenceKeys.concat(key, ARTICLE_ID_SUFFIX), articleId);
 					preferences.store();
 				} catch (final ReadOnlyException | ValidatorException | IOException e) {
 					log.error("Could not store article {}", articleId, e);
@@ -87,8 +88,8 @@ public final class JournalArticlePreferenceHandler implements PreferenceFieldHan
 				log.error("Could not load article resource id for article {}", article.getArticleId(), e);
 			}
 		}
-		preferences.setValue(key + RESOURCE_UUID_SUFFIX, articleResourceUuid);
-		preferences.setValue(key + ARTICLE_ID_SUFFIX, articleId);
+		preferences.setValue(PreferenceKeys.concat(key, RESOURCE_UUID_SUFFIX), articleResourceUuid);
+		preferences.setValue(PreferenceKeys.concat(key, ARTICLE_ID_SUFFIX), articleId);
 	}
 
 }
\ No newline at end of file
@@ -11,19 +11,30 @@ import org.portletbeans.liferay.ddm.DynamicElement.Type;
  *
  * @author Tobias Liefke
  */
-public final class CharacterFieldHandler implements StructureFieldHandler<Character> {
+public final class CharacterFieldHandler implements DefaultValueFieldHandler<Character> {
 
 	@Override
 	public Type getType() {
 		return Type.TEXT;
 	}
 
+	@Override
+	public Character parseDefaultValue(final String defaultValue) {
+		return StringUtils.isEmpty(defaultValue) ? null : defaultValue.charAt(0);
+	}
+
 	@Override
 	public Character read(final DynamicElement element, final Locale locale, final String defaultValue) {
 		final String value = element.getValue(locale, defaultValue);
 		return StringUtils.isEmpty(value) ? null : value.charAt(0);
 	}
 
+	@Override
+	public Character readOrDefault(final DynamicElement element, final Locale locale, final Character defaultValue) {
+		final String value = element.getValue(locale, (String) null);
+		return value == null ? defaultValue : value.charAt(0);
+	}
+
 	@Override
 	public void write(final DynamicElement element, final Locale locale, final Character value,
 			final Map<String, byte[]> images) {
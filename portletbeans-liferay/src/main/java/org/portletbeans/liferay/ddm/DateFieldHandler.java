@@ -1,10 +1,12 @@
 package org.portletbeans.liferay.ddm;
 
+import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.portletbeans.liferay.ddm.DynamicElement.Type;
@@ -12,9 +14,77 @@ import org.portletbeans.liferay.ddm.DynamicElement.Type;
 /**
  * Handles conversion for a structured field of type {@link Date}.
  *
+ * If created for a specific field, the default value of its {@link StructureField} annotation is parsed only once.
+ *
  * @author Tobias Liefke
  */
-public class DateFieldHandler implements FinalFieldHandler<Date> {
+public class DateFieldHandler implements FinalFieldHandler<Date>, DefaultValueFieldHandler<Date> {
+
+	private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("-?\\d+");
+
+	private static final Pattern DATE_PATTERN = Pattern.compile("\\d+-\\d+-\\d+");
+
+	private static final Pattern LOCAL_DATE_TIME_PATTERN = Pattern.compile("\\d+-\\d+-\\d+T\\d+:\\d+:\\d+");
+
+	/**
+	 * Parses a default value.
+	 *
+	 * @param defaultValue
+	 *            the default value, either a timestamp or an ISO 8601 date, date time or date time with time zone
+	 * @return the timestamp of the default value or {@code null} if it is empty or invalid
+	 */
+	private static Long parseDefaultTime(final String defaultValue) {
+		if (StringUtils.isEmpty(defaultValue)) {
+			return null;
+		}
+		if (TIMESTAMP_PATTERN.matcher(defaultValue).matches()) {
+			return Long.valueOf(defaultValue);
+		}
+		final SimpleDateFormat format;
+		if (DATE_PATTERN.matcher(defaultValue).matches()) {
+			// Just a date
+			format = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
+		} else if (LOCAL_DATE_TIME_PATTERN.matcher(defaultValue).matches()) {
+			// A date with a time in the system time zone
+			format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ENGLISH);
+		} else {
+			// A date with a time in a custom time zone
+			format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", Locale.ENGLISH);
+		}
+		try {
+			return format.parse(defaultValue).getTime();
+		} catch (final ParseException e) {
+			// Ignore and return null
+			return null;
+		}
+	}
+
+	/** The default value of the field this handler was created for, {@code null} for a shared handler. */
+	private final String fieldDefaultValue;
+
+	/** The parsed {@link #fieldDefaultValue}. */
+	private final Long fieldDefaultTime;
+
+	/**
+	 * Creates a handler that parses every default value when it is needed.
+	 */
+	public DateFieldHandler() {
+		this.fieldDefaultValue = null;
+		this.fieldDefaultTime = null;
+	}
+
+	/**
+	 * Creates a handler for a specific field, which parses the default value of the field in advance.
+	 *
+	 * @param field
+	 *            the field
+	 */
+	public DateFieldHandler(final Field field) {
+		final StructureField structureField = field.getAnnotation(StructureField.class);
+		this.fieldDefaultValue = structureField == null || StringUtils.isBlank(structureField.defaultValue()) ? null
+				: structureField.defaultValue();
+		this.fieldDefaultTime = parseDefaultTime(this.fieldDefaultValue);
+	}
 
 	@Override
 	public Type getType() {
@@ -30,8 +100,34 @@ public class DateFieldHandler implements FinalFieldHandler<Date> {
 		}
 	}
 
+	@Override
+	public Date parseDefaultValue(final String defaultValue) {
+		final Long time = defaultValue.equals(this.fieldDefaultValue) ? this.fieldDefaultTime
+				: parseDefaultTime(defaultValue);
+		return time == null ? null : new Date(time);
+	}
+
 	@Override
 	public Date read(final DynamicElement element, final Locale locale, final String defaultValue) {
+		final Date value = readValue(element, locale);
+		if (value != null || StringUtils.isEmpty(defaultValue)) {
+			return value;
+		}
+		// Always return a new instance, as dates are mutable
+		return parseDefaultValue(defaultValue);
+	}
+
+	@Override
+	public Date readOrDefault(final DynamicElement element, final Locale locale, final Date defaultValue) {
+		final Date value = readValue(element, locale);
+		if (value != null || defaultValue == null) {
+			return value;
+		}
+		// Always return a new instance, as dates are mutable
+		return new Date(defaultValue.getTime());
+	}
+
+	private Date readValue(final DynamicElement element, final Locale locale) {
 		final String value = element.getValue(locale, "");
 		if (StringUtils.isNotEmpty(value)) {
 			try {
@@ -40,27 +136,6 @@ public class DateFieldHandler implements FinalFieldHandler<Date> {
 				// Ignore and use the default
 			}
 		}
-		if (StringUtils.isNotEmpty(defaultValue)) {
-			if (defaultValue.matches("-?\\d+")) {
-				return new Date(Long.valueOf(defaultValue));
-			}
-			final SimpleDateFormat format;
-			if (defaultValue.matches("\\d+-\\d+-\\d+")) {
-				// Just a date
-				format = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
-			} else if (defaultValue.matches("\\d+-\\d+-\\d+T\\d+:\\d+:\\d+")) {
-				// A date with a time in the system time zone
-				format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ENGLISH);
-			} else {
-				// A date with a time in a custom time zone
-				format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", Locale.ENGLISH);
-			}
-			try {
-				return format.parse(defaultValue);
-			} catch (final ParseException e) {
-				// Ignore and return null
-			}
-		}
 		return null;
 	}
 
@@ -0,0 +1,41 @@
+package org.portletbeans.liferay.ddm;
+
+import java.util.Locale;
+
+/**
+ * Handles the read of a {@link StructureField} with a default value, that is parsed only once.
+ *
+ * The {@link StructureFieldRegistry} parses the {@link StructureField#defaultValue() default value} of every field
+ * with such a handler when the field is inspected and uses the parsed value for every empty element. As that value
+ * is shared by all reads of the field, it is only used if it is immutable - otherwise the default value is parsed
+ * again for every read.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the handled field
+ */
+public interface DefaultValueFieldHandler<T> extends StructureFieldHandler<T> {
+
+	/**
+	 * Parses the default value of a field.
+	 *
+	 * @param defaultValue
+	 *            the default value given in the annotation, not {@code null}
+	 * @return the parsed default value or {@code null} if it is invalid
+	 */
+	T parseDefaultValue(final String defaultValue);
+
+	/**
+	 * Loads an object from a structure element.
+	 *
+	 * @param element
+	 *            the element to load
+	 * @param locale
+	 *            the locale of the current user
+	 * @param defaultValue
+	 *            the parsed (immutable) default value, returned if the element is empty
+	 * @return the loaded value or the default value if the element is empty
+	 */
+	T readOrDefault(final DynamicElement element, final Locale locale, final T defaultValue);
+
+}
@@ -16,7 +16,7 @@ import lombok.RequiredArgsConstructor;
  *            the type of the enum
  */
 @RequiredArgsConstructor
-public class EnumFieldHandler<E extends Enum<E>> implements StructureFieldHandler<E> {
+public class EnumFieldHandler<E extends Enum<E>> implements DefaultValueFieldHandler<E> {
 
 	private final Class<E> enumClass;
 
@@ -25,8 +25,29 @@ public class EnumFieldHandler<E extends Enum<E>> implements StructureFieldHandle
 		return Type.TEXT;
 	}
 
+	@Override
+	public E parseDefaultValue(final String defaultValue) {
+		try {
+			return Enum.valueOf(this.enumClass, defaultValue);
+		} catch (final IllegalArgumentException e) {
+			// Ignore and use null
+			return null;
+		}
+	}
+
 	@Override
 	public E read(final DynamicElement element, final Locale locale, final String defaultValue) {
+		final E value = readValue(element, locale);
+		return value != null || StringUtils.isEmpty(defaultValue) ? value : parseDefaultValue(defaultValue);
+	}
+
+	@Override
+	public E readOrDefault(final DynamicElement element, final Locale locale, final E defaultValue) {
+		final E value = readValue(element, locale);
+		return value == null ? defaultValue : value;
+	}
+
+	private E readValue(final DynamicElement element, final Locale locale) {
 		final String value = element.getValue(locale, "");
 		if (StringUtils.isNotEmpty(value)) {
 			try {
@@ -35,14 +56,6 @@ public class EnumFieldHandler<E extends Enum<E>> implements StructureFieldHandle
 				// Ignore and use the default
 			}
 		}
-
-		if (StringUtils.isNotEmpty(defaultValue)) {
-			try {
-				return Enum.valueOf(this.enumClass, defaultValue);
-			} catch (final IllegalArgumentException e) {
-				// Ignore and use null
-			}
-		}
 		return null;
 	}
 
@@ -1,5 +1,8 @@
 package org.portletbeans.liferay.ddm;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -7,8 +10,8 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -17,13 +20,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang.StringUtils;
 import org.portletbeans.liferay.ddm.DynamicElement.Type;
+import org.portletbeans.util.ClassMetadataCache;
 import org.portletbeans.util.ClassUtil;
-import org.reflections.Reflections;
 
 import com.google.common.collect.ImmutableMap;
 import com.liferay.portlet.dynamicdatamapping.ContentXmlException;
@@ -40,10 +45,32 @@ public final class StructureFieldRegistry {
 
 	/**
 	 * Saves the cached metadata for a class which contains {@link StructureField}s.
+	 *
+	 * Instantiation and {@link PostConstruct} methods are resolved to {@link MethodHandle}s once per class.
 	 */
 	@Getter
 	private static class StructuredClassDescription {
 
+		private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+		private static final MethodType POST_CONSTRUCT_TYPE = MethodType.methodType(void.class, Object.class);
+
+		private static final MethodHandle[] NO_METHODS = new MethodHandle[0];
+
+		private static MethodHandle findConstructor(final Class<?> type) {
+			if (Modifier.isAbstract(type.getModifiers()) || type.isInterface()) {
+				return null;
+			}
+			try {
+				final Constructor<?> defaultConstructor = type.getDeclaredConstructor();
+				defaultConstructor.setAccessible(true);
+				return MethodHandles.lookup().unreflectConstructor(defaultConstructor).asType(CONSTRUCTOR_TYPE);
+			} catch (final NoSuchMethodException | IllegalAccessException e) {
+				// Only types that are never created by the registry
+				return null;
+			}
+		}
+
 		/** The field that was marked as primary field for a {@link StructuredEntity}. */
 		private StructureFieldDescription<?> primaryField;
 
@@ -53,18 +80,74 @@ public final class StructureFieldRegistry {
 		/** All other fields. */
 		private final List<StructureFieldDescription<?>> fields;
 
-		private final List<Method> postConstructMethods;
+		/** The default constructor of the described class, {@code null} if the class can't be instantiated. */
+		private final MethodHandle constructor;
+
+		/** The {@link PostConstruct} methods, the methods of the superclasses first. */
+		private MethodHandle[] postConstructMethods;
 
 		StructuredClassDescription() {
 			this.fields = new ArrayList<>();
-			this.postConstructMethods = new ArrayList<>();
+			this.constructor = null;
+			this.postConstructMethods = NO_METHODS;
 		}
 
-		StructuredClassDescription(final StructuredClassDescription parent) {
+		StructuredClassDescription(final StructuredClassDescription parent, final Class<?> type) {
 			this.primaryField = parent.primaryField;
 			this.titleField = parent.titleField;
 			this.fields = new ArrayList<>(parent.fields);
-			this.postConstructMethods = new ArrayList<>(parent.postConstructMethods);
+			this.constructor = findConstructor(type);
+			this.postConstructMethods = parent.postConstructMethods;
+		}
+
+		public void addPostConstructMethod(final Method method) {
+			method.setAccessible(true);
+			final MethodHandle handle;
+			try {
+				handle = MethodHandles.lookup().unreflect(method).asType(POST_CONSTRUCT_TYPE);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException("Can't access " + method, e);
+			}
+			this.postConstructMethods = Arrays.copyOf(this.postConstructMethods, this.postConstructMethods.length + 1);
+			this.postConstructMethods[this.postConstructMethods.length - 1] = handle;
+		}
+
+		/**
+		 * Creates a new instance of the described class.
+		 *
+		 * @param type
+		 *            the described class, only used for the error message
+		 * @return the new instance, before any fields are read
+		 */
+		public <T> T newInstance(final Class<T> type) {
+			if (this.constructor == null) {
+				throw new IllegalArgumentException("Can't instantiate " + type);
+			}
+			try {
+				return (T) this.constructor.invokeExact();
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new IllegalArgumentException("Can't instantiate " + type, e);
+			}
+		}
+
+		/**
+		 * Calls all {@link PostConstruct} methods for an entity.
+		 *
+		 * @param entity
+		 *            the entity created by {@link #newInstance(Class)}, after all fields were read
+		 */
+		public void postConstruct(final Object entity) {
+			try {
+				for (final MethodHandle postConstruct : this.postConstructMethods) {
+					postConstruct.invokeExact(entity);
+				}
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new IllegalArgumentException("Can't initialize " + entity.getClass(), e);
+			}
 		}
 
 		public void addField(final Field field) {
@@ -139,6 +222,12 @@ public final class StructureFieldRegistry {
 
 		private final boolean isPrimary;
 
+		/**
+		 * The default value, as parsed by a {@link DefaultValueFieldHandler} - {@code null} if the handler can't parse
+		 * it in advance or if the parsed value is mutable.
+		 */
+		private final T parsedDefaultValue;
+
 		StructureFieldDescription(final Field field) {
 			this.field = field;
 			final StructureField structureField = field.getAnnotation(StructureField.class);
@@ -171,6 +260,11 @@ public final class StructureFieldRegistry {
 				throw new IllegalArgumentException("Can't handle final field " + field);
 			}
 			this.type = findType(structureField);
+			final T parsedValue = this.defaultValue == null || !(this.handler instanceof DefaultValueFieldHandler)
+					? null : ((DefaultValueFieldHandler<T>) this.handler).parseDefaultValue(this.defaultValue);
+			// Mutable values are parsed again for every read, as every instance needs its own value
+			this.parsedDefaultValue = parsedValue == null || !ClassUtil.isImmutable(parsedValue.getClass()) ? null
+					: parsedValue;
 		}
 
 		private Type findType(final StructureField structureField) {
@@ -185,7 +279,7 @@ public final class StructureFieldRegistry {
 						((FinalFieldHandler<T>) this.handler).read(value, element, locale, this.defaultValue);
 					}
 				} else {
-					final T value = this.handler.read(element, locale, this.defaultValue);
+					final T value = readValue(element, locale);
 					// Dont' set null values for primitives (the default after initialization is usually enough)
 					if (value != null || !this.field.getType().isPrimitive()) {
 						this.field.set(instance, value);
@@ -212,7 +306,7 @@ public final class StructureFieldRegistry {
 					}
 					values.clear();
 					for (final DynamicElement element : namedElements) {
-						values.add(this.handler.read(element, locale, this.defaultValue));
+						values.add(readValue(element, locale));
 					}
 				} else if (namedElements.isEmpty()) {
 					// Create the matching element
@@ -227,6 +321,13 @@ public final class StructureFieldRegistry {
 			}
 		}
 
+		private T readValue(final DynamicElement element, final Locale locale) {
+			if (this.parsedDefaultValue == null) {
+				return this.handler.read(element, locale, this.defaultValue);
+			}
+			return ((DefaultValueFieldHandler<T>) this.handler).readOrDefault(element, locale, this.parsedDefaultValue);
+		}
+
 		@Override
 		public String toString() {
 			return this.field.toString();
@@ -291,19 +392,25 @@ public final class StructureFieldRegistry {
 
 	private static final StructuredClassDescription EMPTY_DESCRIPTION = new StructuredClassDescription();
 
-	private static final Map<Class<?>, StructuredClassDescription> STRUCTURED_CLASSES = Collections
-			.synchronizedMap(new HashMap<Class<?>, StructuredClassDescription>());
+	private static final ClassMetadataCache<StructuredClassDescription> STRUCTURED_CLASSES = //
+			new ClassMetadataCache<StructuredClassDescription>() {
 
-	private static final Map<Class<? extends StructureFieldHandler<?>>, StructureFieldHandler<?>> HANDLERS = Collections
-			.synchronizedMap(new HashMap<Class<? extends StructureFieldHandler<?>>, StructureFieldHandler<?>>());
+				@Override
+				protected StructuredClassDescription compute(final Class<?> type) {
+					return createClassDescription(type);
+				}
+			};
+
+	private static final ConcurrentMap<Class<? extends StructureFieldHandler<?>>, StructureFieldHandler<?>> HANDLERS = //
+			new ConcurrentHashMap<>();
 
-	private static final Map<Class<?>, Class<? extends StructureFieldHandler<?>>> DEFAULT_HANDLERS = Collections
-			.unmodifiableMap(createDefaultHandlers());
+	private static final Map<Class<?>, Class<? extends StructureFieldHandler<?>>> DEFAULT_HANDLERS = //
+			new ConcurrentHashMap<>(createDefaultHandlers());
 
 	private static Map<Class<?>, Class<? extends StructureFieldHandler<?>>> createDefaultHandlers() {
 		final Map<Class<?>, Class<? extends StructureFieldHandler<?>>> result = new HashMap<>();
-		final Set<Class<? extends StructureFieldHandler<?>>> handlerTypes = new Reflections("org.portletbeans")
-				.getSubTypesOf((Class<StructureFieldHandler<?>>) (Class<?>) StructureFieldHandler.class);
+		final Set<Class<? extends StructureFieldHandler<?>>> handlerTypes = ClassUtil
+				.getIndexedClasses((Class<StructureFieldHandler<?>>) (Class<?>) StructureFieldHandler.class);
 		for (final Class<? extends StructureFieldHandler<?>> handlerType : handlerTypes) {
 			if (!Modifier.isAbstract(handlerType.getModifiers())) {
 				final Class<Object> type = ClassUtil.getActualTypeBinding(handlerType, StructureFieldHandler.class, 0);
@@ -328,18 +435,10 @@ public final class StructureFieldRegistry {
 	 */
 	public static <T> T createEntity(final Class<T> entityClass, final DynamicElement element, final Locale locale) {
 		final StructuredClassDescription classDescription = getClassDescription(entityClass);
-		try {
-			final T entity = entityClass.newInstance();
-			read(element, locale, entity);
-			for (final Method postConstruct : classDescription.getPostConstructMethods()) {
-				postConstruct.invoke(entity);
-			}
-			return entity;
-		} catch (final InstantiationException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			throw new IllegalArgumentException("Can't instantiate " + entityClass, e);
-		}
-
+		final T entity = classDescription.newInstance(entityClass);
+		read(element, locale, entity);
+		classDescription.postConstruct(entity);
+		return entity;
 	}
 
 	/**
@@ -355,18 +454,10 @@ public final class StructureFieldRegistry {
 	 */
 	public static <T> T createEntity(final Class<T> entityClass, final DynamicElements elements, final Locale locale) {
 		final StructuredClassDescription classDescription = getClassDescription(entityClass);
-		try {
-			final T entity = entityClass.newInstance();
-			read(elements, locale, entity);
-			for (final Method postConstruct : classDescription.getPostConstructMethods()) {
-				postConstruct.invoke(entity);
-			}
-			return entity;
-		} catch (final InstantiationException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			throw new IllegalArgumentException("Can't instantiate " + entityClass, e);
-		}
-
+		final T entity = classDescription.newInstance(entityClass);
+		read(elements, locale, entity);
+		classDescription.postConstruct(entity);
+		return entity;
 	}
 
 	/**
@@ -451,7 +542,10 @@ public final class StructureFieldRegistry {
 				} catch (final NoSuchMethodException e) {
 					// Ignore and try to use the default
 					handler = handlerClass.newInstance();
-					HANDLERS.put(handlerClass, handler);
+					final StructureFieldHandler<?> sharedHandler = HANDLERS.putIfAbsent(handlerClass, handler);
+					if (sharedHandler != null) {
+						handler = sharedHandler;
+					}
 				}
 			} catch (final InvocationTargetException | InstantiationException | IllegalAccessException e) {
 				throw new IllegalArgumentException("Can't instantiate handler: " + handlerClass, e);
@@ -460,6 +554,30 @@ public final class StructureFieldRegistry {
 		return (StructureFieldHandler<T>) handler;
 	}
 
+	/**
+	 * Inspects all declared structure fields for the given class.
+	 *
+	 * @param c
+	 *            the inspected class
+	 * @return the annotated fields of this class and all superclasses
+	 */
+	private static StructuredClassDescription createClassDescription(final Class<?> c) {
+		// Each class needs its own description, as the constructor is specific to the class
+		final StructuredClassDescription description = new StructuredClassDescription(
+				getClassDescription(c.getSuperclass()), c);
+		for (final Field field : c.getDeclaredFields()) {
+			if (field.isAnnotationPresent(StructureField.class) || field.isAnnotationPresent(TitleField.class)) {
+				description.addField(field);
+			}
+		}
+		for (final Method method : c.getDeclaredMethods()) {
+			if (method.getAnnotation(PostConstruct.class) != null) {
+				description.addPostConstructMethod(method);
+			}
+		}
+		return description;
+	}
+
 	/**
 	 * Resolves all declared structure fields for the given class.
 	 *
@@ -471,34 +589,39 @@ public final class StructureFieldRegistry {
 		if (c == Object.class) {
 			return EMPTY_DESCRIPTION;
 		}
-		StructuredClassDescription description = STRUCTURED_CLASSES.get(c);
-		if (description == null) {
-			description = getClassDescription(c.getSuperclass());
-			boolean modified = false;
-			for (final Field field : c.getDeclaredFields()) {
-				if (field.isAnnotationPresent(StructureField.class) || field.isAnnotationPresent(TitleField.class)) {
-					if (!modified) {
-						description = new StructuredClassDescription(description);
-						modified = true;
-					}
+		return STRUCTURED_CLASSES.get(c);
+	}
 
-					description.addField(field);
-				}
-			}
-			for (final Method method : c.getDeclaredMethods()) {
-				if (method.getAnnotation(PostConstruct.class) != null) {
-					if (!modified) {
-						description = new StructuredClassDescription(description);
-						modified = true;
-					}
-					method.setAccessible(true);
-					description.getPostConstructMethods().add(method);
-				}
-			}
+	/**
+	 * Inspects the given classes, before they are used for the first time.
+	 *
+	 * Should be called during the deployment of a portlet, for example from a {@code ServletContextListener}, so that
+	 * the first requests don't need to inspect the classes.
+	 *
+	 * @param classes
+	 *            the entity classes and all other classes with {@link StructureField}s
+	 * @throws IllegalArgumentException
+	 *             if one of the classes contains an invalid structure field
+	 */
+	public static void preload(final Class<?>... classes) {
+		preload(Arrays.asList(classes));
+	}
 
-			STRUCTURED_CLASSES.put(c, description);
+	/**
+	 * Inspects the given classes, before they are used for the first time.
+	 *
+	 * Should be called during the deployment of a portlet, for example from a {@code ServletContextListener}, so that
+	 * the first requests don't need to inspect the classes.
+	 *
+	 * @param classes
+	 *            the entity classes and all other classes with {@link StructureField}s
+	 * @throws IllegalArgumentException
+	 *             if one of the classes contains an invalid structure field
+	 */
+	public static void preload(final Iterable<? extends Class<?>> classes) {
+		for (final Class<?> c : classes) {
+			getClassDescription(c);
 		}
-		return description;
 	}
 
 	/**
@@ -537,6 +660,51 @@ public final class StructureFieldRegistry {
 		}
 	}
 
+	/**
+	 * Registers the default handler for all structure fields of the given type.
+	 *
+	 * The handler class is instantiated for every field, if it has a public constructor with a {@link Field}
+	 * parameter. Otherwise it is instantiated once with its default constructor.
+	 *
+	 * Handlers that are known at build time should be listed in the index file
+	 * {@value ClassUtil#INDEX_FOLDER}{@code org.portletbeans.liferay.ddm.StructureFieldHandler} instead. Registering a
+	 * handler has no effect on classes that were already inspected.
+	 *
+	 * @param type
+	 *            the type of the handled fields
+	 * @param handlerClass
+	 *            the class of the handler
+	 */
+	public static <T> void register(final Class<T> type,
+			final Class<? extends StructureFieldHandler<? super T>> handlerClass) {
+		if (type == null || handlerClass == null) {
+			throw new IllegalArgumentException("Missing type or handler class");
+		}
+		DEFAULT_HANDLERS.put(type, (Class<? extends StructureFieldHandler<?>>) handlerClass);
+	}
+
+	/**
+	 * Registers the default handler for all structure fields of the given type.
+	 *
+	 * The given handler is used for all fields of that type and for all fields that reference the class of the
+	 * handler explicitly in {@link StructureField#handler()}. Registering a handler has no effect on classes that were
+	 * already inspected.
+	 *
+	 * @param type
+	 *            the type of the handled fields
+	 * @param handler
+	 *            the handler
+	 */
+	public static <T> void register(final Class<T> type, final StructureFieldHandler<? super T> handler) {
+		if (type == null || handler == null) {
+			throw new IllegalArgumentException("Missing type or handler");
+		}
+		final Class<? extends StructureFieldHandler<?>> handlerClass = //
+				(Class<? extends StructureFieldHandler<?>>) handler.getClass();
+		HANDLERS.put(handlerClass, handler);
+		DEFAULT_HANDLERS.put(type, handlerClass);
+	}
+
 	/**
 	 * Saves the annotated fields of an object to a dynamic element of a structure.
 	 *
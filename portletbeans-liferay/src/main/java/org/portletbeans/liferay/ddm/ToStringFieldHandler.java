@@ -1,7 +1,5 @@
 package org.portletbeans.liferay.ddm;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -9,19 +7,21 @@ import java.util.Map;
 import org.apache.commons.lang.ClassUtils;
 import org.apache.commons.lang.StringUtils;
 import org.portletbeans.liferay.ddm.DynamicElement.Type;
+import org.portletbeans.util.StringConverter;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Handles the conversion of fields that have a string constructor into preference values.
+ * Handles the conversion of fields that have a string constructor or a static {@code valueOf(String)} or
+ * {@code parse(String)} method into structure values.
  *
  * @author Tobias Liefke
  * @param <T>
  *            The type of the field
  */
 @Slf4j
-public final class ToStringFieldHandler<T> implements StructureFieldHandler<T> {
+public final class ToStringFieldHandler<T> implements DefaultValueFieldHandler<T> {
 
 	private static final Map<Class<?>, Type> TYPES = new HashMap<>();
 
@@ -36,7 +36,7 @@ public final class ToStringFieldHandler<T> implements StructureFieldHandler<T> {
 		TYPES.put(Boolean.class, Type.BOOLEAN);
 	}
 
-	private final Constructor<T> constructor;
+	private final StringConverter<T> converter;
 
 	@Getter
 	private final Type type;
@@ -47,11 +47,11 @@ public final class ToStringFieldHandler<T> implements StructureFieldHandler<T> {
 	 * @param type
 	 *            the class of the associated field
 	 * @throws NoSuchMethodException
-	 *             if the string constructor for the given type was not found
+	 *             if the type can't be created from a string
 	 */
 	public ToStringFieldHandler(final Class<T> type) throws NoSuchMethodException {
 		Class<T> wrapper = ClassUtils.primitiveToWrapper(type);
-		this.constructor = wrapper.getConstructor(String.class);
+		this.converter = StringConverter.of(wrapper);
 		Type elementType = null;
 		while (wrapper != null && elementType == null) {
 			elementType = TYPES.get(wrapper);
@@ -60,22 +60,34 @@ public final class ToStringFieldHandler<T> implements StructureFieldHandler<T> {
 		this.type = elementType == null ? Type.TEXT : elementType;
 	}
 
-	@Override
-	public T read(final DynamicElement element, final Locale locale, final String defaultValue) {
-		final String value = element.getValue(locale, defaultValue);
+	private T convert(final String value) {
 		if (StringUtils.isEmpty(value) || "null".equals(value)) {
 			return null;
 		}
 		try {
-			return this.constructor.newInstance(value);
-		} catch (final InstantiationException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			log.error("Could not convert the field value to a " + this.constructor.getDeclaringClass() + ": " + value,
-					e);
+			return this.converter.convert(value);
+		} catch (final RuntimeException e) {
+			log.error("Could not convert the field value to a " + this.converter.getType() + ": " + value, e);
 			return null;
 		}
 	}
 
+	@Override
+	public T parseDefaultValue(final String defaultValue) {
+		return convert(defaultValue);
+	}
+
+	@Override
+	public T read(final DynamicElement element, final Locale locale, final String defaultValue) {
+		return convert(element.getValue(locale, defaultValue));
+	}
+
+	@Override
+	public T readOrDefault(final DynamicElement element, final Locale locale, final T defaultValue) {
+		final String value = element.getValue(locale, (String) null);
+		return value == null ? defaultValue : convert(value);
+	}
+
 	@Override
 	public void write(final DynamicElement element, final Locale locale, final T value,
 			final Map<String, byte[]> images) {
@@ -54,6 +54,7 @@ public class LiferayDdmTest {
 		assertThat(resultEntity.isBooleanProperty()).isEqualTo(testEntity.isBooleanProperty());
 		assertThat(resultEntity.getCharProperty()).isEqualTo(testEntity.getCharProperty());
 		assertThat(resultEntity.getDateProperty()).isEqualTo(testEntity.getDateProperty());
+		assertThat(resultEntity.getDefaultDateProperty()).isEqualTo(new Date(2 * DateUtils.MILLIS_PER_DAY));
 		assertThat(resultEntity.getDoubleProperty()).isEqualTo(testEntity.getDoubleProperty());
 		assertThat(resultEntity.getIntProperty()).isEqualTo(testEntity.getIntProperty());
 		assertThat(resultEntity.getTransientProperty()).isEqualTo("init() called");
@@ -40,6 +40,9 @@ public class LiferayDdmTestEntity {
 	@StructureField
 	private Date dateProperty;
 
+	@StructureField(defaultValue = "172800000")
+	private Date defaultDateProperty;
+
 	@StructureField
 	private List<String> stringsProperty;
 
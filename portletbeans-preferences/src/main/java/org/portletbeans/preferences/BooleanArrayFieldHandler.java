@@ -0,0 +1,35 @@
+package org.portletbeans.preferences;
+
+/**
+ * Handles the conversion of {@code boolean[]} fields into a multi-valued preference.
+ *
+ * @author Tobias Liefke
+ */
+public final class BooleanArrayFieldHandler extends PrimitiveArrayFieldHandler<boolean[]> {
+
+	/**
+	 * Creates the handler for {@code boolean[]} fields.
+	 */
+	public BooleanArrayFieldHandler() {
+		super(boolean[].class);
+	}
+
+	@Override
+	protected String[] format(final boolean[] value) {
+		final String[] result = new String[value.length];
+		for (int i = 0; i < value.length; i++) {
+			result[i] = String.valueOf(value[i]);
+		}
+		return result;
+	}
+
+	@Override
+	protected boolean[] parse(final String[] values) {
+		final boolean[] result = new boolean[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Boolean.parseBoolean(values[i]);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+/**
+ * Handles the conversion of {@code boolean} and {@link Boolean} values into preference values.
+ *
+ * Loads {@code boolean} fields without boxing and parses {@link Boolean} values with {@link Boolean#valueOf(String)},
+ * which returns the shared instances.
+ *
+ * @author Tobias Liefke
+ */
+public final class BooleanFieldHandler
+		implements ValueFieldHandler<Boolean>, DefaultValueFieldHandler<Boolean>, BooleanPreferenceFieldHandler {
+
+	@Override
+	public String format(final Boolean value) {
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Boolean load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		return parse(preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public boolean loadBoolean(final PortletPreferences preferences, final String key, final String defaultValue,
+			final boolean currentValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		return value == null ? currentValue : Boolean.parseBoolean(value);
+	}
+
+	@Override
+	public Boolean loadOrDefault(final PortletPreferences preferences, final String key, final Boolean defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : parse(value);
+	}
+
+	@Override
+	public Boolean parse(final String value) {
+		return value == null ? null : Boolean.valueOf(value);
+	}
+
+	@Override
+	public Boolean parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Boolean value)
+			throws ReadOnlyException {
+		preferences.setValue(key, format(value));
+	}
+
+	@Override
+	public void storeBoolean(final PortletPreferences preferences, final String key, final boolean value)
+			throws ReadOnlyException {
+		preferences.setValue(key, String.valueOf(value));
+	}
+
+}
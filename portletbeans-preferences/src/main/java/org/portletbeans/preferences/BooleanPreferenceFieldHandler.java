@@ -0,0 +1,47 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+/**
+ * Handles the load and store of a {@code boolean} {@link PreferenceField} without boxing.
+ *
+ * Used by the {@link PreferenceFieldRegistry} for all {@code boolean} fields, if the handler of the field implements
+ * this interface.
+ *
+ * @author Tobias Liefke
+ */
+public interface BooleanPreferenceFieldHandler extends PreferenceFieldHandler<Boolean> {
+
+	/**
+	 * Loads a value from the preferences.
+	 *
+	 * @param preferences
+	 *            the current preferences
+	 * @param key
+	 *            the key for the field
+	 * @param defaultValue
+	 *            the default value given in the annotation
+	 * @param currentValue
+	 *            the current value of the field
+	 * @return the loaded value or the current value if none was stored
+	 */
+	boolean loadBoolean(final PortletPreferences preferences, final String key, final String defaultValue,
+			final boolean currentValue);
+
+	/**
+	 * Saves a value to the preferences.
+	 *
+	 * @param preferences
+	 *            the current preferences
+	 * @param key
+	 *            the key for the field
+	 * @param value
+	 *            the value of the field
+	 * @throws ReadOnlyException
+	 *             if the preference is readonly
+	 */
+	void storeBoolean(final PortletPreferences preferences, final String key, final boolean value)
+			throws ReadOnlyException;
+
+}
@@ -8,21 +8,42 @@ import javax.portlet.ReadOnlyException;
  *
  * @author Tobias Liefke
  */
-public final class CharacterFieldHandler implements PreferenceFieldHandler<Character> {
+public final class CharacterFieldHandler implements ValueFieldHandler<Character>, DefaultValueFieldHandler<Character> {
+
+	@Override
+	public String format(final Character value) {
+		return value == null ? null : value.toString();
+	}
 
 	@Override
 	public Character load(final PortletPreferences preferences, final String key, final String defaultValue) {
-		final String value = preferences.getValue(key, defaultValue);
+		return parse(preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public Character loadOrDefault(final PortletPreferences preferences, final String key,
+			final Character defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : parse(value);
+	}
+
+	@Override
+	public Character parse(final String value) {
 		if (value == null || value.length() == 0) {
 			return null;
 		}
 		return value.charAt(0);
 	}
 
+	@Override
+	public Character parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final Character value)
 			throws ReadOnlyException {
-		preferences.setValue(key, value == null ? null : value.toString());
+		preferences.setValue(key, format(value));
 	}
 
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +16,9 @@ import java.util.TreeSet;
 import javax.portlet.PortletPreferences;
 import javax.portlet.ReadOnlyException;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.google.common.collect.ImmutableMap;
@@ -37,6 +41,8 @@ public class CollectionFieldHandler<E> implements FinalFieldHandler<Collection<E
 
 	private final Class<Collection<E>> collectionClass;
 
+	/** The handler of the elements in the collection. */
+	@Getter(AccessLevel.PROTECTED)
 	private final PreferenceFieldHandler<E> elementHandler;
 
 	/**
@@ -70,10 +76,11 @@ public class CollectionFieldHandler<E> implements FinalFieldHandler<Collection<E
 			final String defaultValue) {
 		try {
 			currentValue.clear();
-			final int length = Integer.parseInt(preferences.getValue(key + ".length",
+			final PreferenceKeys keys = PreferenceKeys.of(key);
+			final int length = Integer.parseInt(preferences.getValue(keys.getLengthKey(),
 					StringUtils.isEmpty(defaultValue) ? "0" : defaultValue));
 			for (int i = 0; i < length; i++) {
-				currentValue.add(this.elementHandler.load(preferences, key + '.' + i, ""));
+				currentValue.add(this.elementHandler.load(preferences, keys.getElementKey(i), ""));
 			}
 		} catch (final NumberFormatException e) {
 			// Ignore and return the empty result
@@ -95,14 +102,25 @@ public class CollectionFieldHandler<E> implements FinalFieldHandler<Collection<E
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final Collection<E> values)
 			throws ReadOnlyException {
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		final int previousLength = PreferenceFieldRegistry.getLength(preferences, keys);
 		int index = 0;
 		if (values != null) {
 			for (final E element : values) {
-				this.elementHandler.store(preferences, key + '.' + index, element);
+				this.elementHandler.store(preferences, keys.getElementKey(index), element);
 				index++;
 			}
 		}
-		preferences.setValue(key + ".length", String.valueOf(index));
+		preferences.setValue(keys.getLengthKey(), String.valueOf(index));
+
+		// Remove the elements that are not used anymore
+		if (index < previousLength) {
+			final Set<String> removedKeys = new HashSet<>();
+			for (int i = index; i < previousLength; i++) {
+				removedKeys.add(keys.getElementKey(i));
+			}
+			PreferenceFieldRegistry.resetKeys(preferences, removedKeys);
+		}
 	}
 
 }
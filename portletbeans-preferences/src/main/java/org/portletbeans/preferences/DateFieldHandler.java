@@ -10,6 +10,7 @@ import javax.portlet.ReadOnlyException;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.FastDateFormat;
 
 /**
@@ -18,7 +19,7 @@ import org.apache.commons.lang3.time.FastDateFormat;
  * @author Tobias Liefke
  */
 @Slf4j
-public final class DateFieldHandler implements PreferenceFieldHandler<Date> {
+public final class DateFieldHandler implements ValueFieldHandler<Date>, DefaultValueFieldHandler<Date> {
 
 	private static Date parseValue(final String value) throws ParseException {
 		try {
@@ -31,6 +32,11 @@ public final class DateFieldHandler implements PreferenceFieldHandler<Date> {
 	private static final FastDateFormat FORMAT = FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss",
 			TimeZone.getTimeZone("GMT"), Locale.ENGLISH);
 
+	@Override
+	public String format(final Date value) {
+		return value == null ? null : String.valueOf(value.getTime());
+	}
+
 	@Override
 	public Date load(final PortletPreferences preferences, final String key, final String defaultValue) {
 		final String value = preferences.getValue(key, defaultValue);
@@ -53,10 +59,42 @@ public final class DateFieldHandler implements PreferenceFieldHandler<Date> {
 		}
 	}
 
+	@Override
+	public Date loadOrDefault(final PortletPreferences preferences, final String key, final Date defaultValue) {
+		final String value = preferences.getValue(key, null);
+		if (value != null) {
+			try {
+				return parseValue(value);
+			} catch (final ParseException e) {
+				log.error("Could not parse date object " + key + " from preferences: " + value, e);
+			}
+		}
+		// Dates are mutable
+		return defaultValue == null ? null : new Date(defaultValue.getTime());
+	}
+
+	@Override
+	public Date parse(final String value) {
+		if (StringUtils.isEmpty(value)) {
+			return null;
+		}
+		try {
+			return parseValue(value);
+		} catch (final ParseException e) {
+			log.error("Could not parse date object from preferences: " + value, e);
+			return null;
+		}
+	}
+
+	@Override
+	public Date parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final Date value)
 			throws ReadOnlyException {
-		preferences.setValue(key, value == null ? null : String.valueOf(value.getTime()));
+		preferences.setValue(key, format(value));
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+
+/**
+ * Handles the load of a {@link PreferenceField} with a default value, that is parsed only once.
+ *
+ * The {@link PreferenceFieldRegistry} parses the {@link PreferenceField#defaultValue() default value} of every field
+ * with such a handler when the field is inspected and uses the parsed value for every missing preference. As that
+ * value is shared by all loads of the field, it is only used if it is immutable - otherwise the default value is
+ * parsed again for every load.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the handled field
+ */
+public interface DefaultValueFieldHandler<T> extends PreferenceFieldHandler<T> {
+
+	/**
+	 * Loads an object from the preferences.
+	 *
+	 * @param preferences
+	 *            the current preferences
+	 * @param key
+	 *            the key for the field
+	 * @param defaultValue
+	 *            the parsed (immutable) default value, returned if no value was stored
+	 * @return the loaded value or the default value if none was stored
+	 */
+	T loadOrDefault(final PortletPreferences preferences, final String key, final T defaultValue);
+
+	/**
+	 * Parses the default value of a field.
+	 *
+	 * @param defaultValue
+	 *            the default value given in the annotation, not {@code null}
+	 * @return the parsed default value or {@code null} if it is invalid
+	 */
+	T parseDefaultValue(final String defaultValue);
+
+}
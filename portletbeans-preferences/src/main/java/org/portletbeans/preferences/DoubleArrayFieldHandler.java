@@ -0,0 +1,35 @@
+package org.portletbeans.preferences;
+
+/**
+ * Handles the conversion of {@code double[]} fields into a multi-valued preference.
+ *
+ * @author Tobias Liefke
+ */
+public final class DoubleArrayFieldHandler extends PrimitiveArrayFieldHandler<double[]> {
+
+	/**
+	 * Creates the handler for {@code double[]} fields.
+	 */
+	public DoubleArrayFieldHandler() {
+		super(double[].class);
+	}
+
+	@Override
+	protected String[] format(final double[] value) {
+		final String[] result = new String[value.length];
+		for (int i = 0; i < value.length; i++) {
+			result[i] = String.valueOf(value[i]);
+		}
+		return result;
+	}
+
+	@Override
+	protected double[] parse(final String[] values) {
+		final double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Double.parseDouble(values[i]);
+		}
+		return result;
+	}
+
+}
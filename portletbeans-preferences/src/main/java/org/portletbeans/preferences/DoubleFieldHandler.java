@@ -0,0 +1,81 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles the conversion of {@code double} and {@link Double} values into preference values.
+ *
+ * Loads {@code double} fields without boxing and parses {@link Double} values with {@link Double#valueOf(String)},
+ * which needs no reflection.
+ *
+ * @author Tobias Liefke
+ */
+@Slf4j
+public final class DoubleFieldHandler
+		implements ValueFieldHandler<Double>, DefaultValueFieldHandler<Double>, DoublePreferenceFieldHandler {
+
+	@Override
+	public String format(final Double value) {
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Double load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		return parse(preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public double loadDouble(final PortletPreferences preferences, final String key, final String defaultValue,
+			final double currentValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		if (value == null) {
+			return currentValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value for " + key + " to a double: " + value, e);
+			return currentValue;
+		}
+	}
+
+	@Override
+	public Double loadOrDefault(final PortletPreferences preferences, final String key, final Double defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : parse(value);
+	}
+
+	@Override
+	public Double parse(final String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Double.valueOf(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value to a Double: " + value, e);
+			return null;
+		}
+	}
+
+	@Override
+	public Double parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Double value)
+			throws ReadOnlyException {
+		preferences.setValue(key, format(value));
+	}
+
+	@Override
+	public void storeDouble(final PortletPreferences preferences, final String key, final double value)
+			throws ReadOnlyException {
+		preferences.setValue(key, String.valueOf(value));
+	}
+
+}
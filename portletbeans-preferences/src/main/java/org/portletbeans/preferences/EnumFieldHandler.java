@@ -15,24 +15,52 @@ import org.apache.commons.lang3.StringUtils;
  *            the type of the enum
  */
 @RequiredArgsConstructor
-public class EnumFieldHandler<E extends Enum<E>> implements PreferenceFieldHandler<E> {
+public class EnumFieldHandler<E extends Enum<E>> implements ValueFieldHandler<E>, DefaultValueFieldHandler<E> {
 
 	private final Class<E> enumClass;
 
+	@Override
+	public String format(final E value) {
+		return value == null ? null : value.name();
+	}
+
 	@Override
 	public E load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final String name = preferences.getValue(key, defaultValue);
+		final E value = parse(name);
+		// Use the default, if a previous element does not exist anymore - the same as loadOrDefault
+		return value == null && !StringUtils.isEmpty(name) ? parse(defaultValue) : value;
+	}
+
+	@Override
+	public E loadOrDefault(final PortletPreferences preferences, final String key, final E defaultValue) {
+		final String name = preferences.getValue(key, null);
+		if (name == null) {
+			return defaultValue;
+		}
+		final E value = parse(name);
+		// Use the default, if a previous element does not exist anymore
+		return value == null && !name.isEmpty() ? defaultValue : value;
+	}
+
+	@Override
+	public E parse(final String value) {
 		try {
-			final String name = preferences.getValue(key, defaultValue);
-			return StringUtils.isEmpty(name) ? null : Enum.valueOf(this.enumClass, name);
+			return StringUtils.isEmpty(value) ? null : Enum.valueOf(this.enumClass, value);
 		} catch (final IllegalArgumentException e) {
 			// A previous element does not exist anymore
-			return StringUtils.isEmpty(defaultValue) ? null : Enum.valueOf(this.enumClass, defaultValue);
+			return null;
 		}
 	}
 
+	@Override
+	public E parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final E value) throws ReadOnlyException {
-		preferences.setValue(key, value == null ? null : value.name());
+		preferences.setValue(key, format(value));
 	}
 
 }
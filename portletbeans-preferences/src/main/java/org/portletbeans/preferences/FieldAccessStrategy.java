@@ -0,0 +1,44 @@
+package org.portletbeans.preferences;
+
+/**
+ * Defines how the {@link PreferenceFieldRegistry} reads and writes the fields of a preference bean.
+ *
+ * @author Tobias Liefke
+ */
+public enum FieldAccessStrategy {
+
+	/**
+	 * Uses {@link java.lang.reflect.Field#get(Object)} and {@link java.lang.reflect.Field#set(Object, Object)}.
+	 */
+	REFLECTION,
+
+	/**
+	 * Uses {@link java.lang.invoke.MethodHandle}s, which are unreflected once per field.
+	 *
+	 * Falls back to {@link #REFLECTION} for every field that can't be accessed with a method handle.
+	 */
+	METHOD_HANDLES;
+
+	/**
+	 * The name of the system property that defines the initial strategy.
+	 */
+	public static final String SYSTEM_PROPERTY = "org.portletbeans.preferences.accessStrategy";
+
+	/**
+	 * Resolves the strategy from the {@link #SYSTEM_PROPERTY system property}.
+	 *
+	 * @return the configured strategy or {@link #METHOD_HANDLES} if none was configured
+	 */
+	static FieldAccessStrategy fromSystemProperty() {
+		final String name = System.getProperty(SYSTEM_PROPERTY);
+		if (name != null) {
+			for (final FieldAccessStrategy strategy : values()) {
+				if (strategy.name().equalsIgnoreCase(name.trim())) {
+					return strategy;
+				}
+			}
+		}
+		return METHOD_HANDLES;
+	}
+
+}
@@ -0,0 +1,368 @@
+package org.portletbeans.preferences;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Reads and writes the value of one field of a preference bean.
+ *
+ * The accessor is created once, when the metadata of a class is inspected, and reused for every load and store.
+ *
+ * @author Tobias Liefke
+ */
+abstract class FieldAccessor {
+
+	/**
+	 * Accesses a field with {@link Field#get(Object)} and {@link Field#set(Object, Object)}.
+	 */
+	private static final class ReflectionAccessor extends FieldAccessor {
+
+		private final Field field;
+
+		ReflectionAccessor(final Field field) {
+			this.field = field;
+		}
+
+		@Override
+		Object get(final Object instance) {
+			try {
+				return this.field.get(instance);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		boolean getBoolean(final Object instance) {
+			try {
+				return this.field.getBoolean(instance);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		double getDouble(final Object instance) {
+			try {
+				return this.field.getDouble(instance);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		int getInt(final Object instance) {
+			try {
+				return this.field.getInt(instance);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		long getLong(final Object instance) {
+			try {
+				return this.field.getLong(instance);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		void set(final Object instance, final Object value) {
+			try {
+				this.field.set(instance, value);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		void setBoolean(final Object instance, final boolean value) {
+			try {
+				this.field.setBoolean(instance, value);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		void setDouble(final Object instance, final double value) {
+			try {
+				this.field.setDouble(instance, value);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		void setInt(final Object instance, final int value) {
+			try {
+				this.field.setInt(instance, value);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		void setLong(final Object instance, final long value) {
+			try {
+				this.field.setLong(instance, value);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Accesses a field with method handles, which were unreflected once.
+	 */
+	private static final class MethodHandleAccessor extends FieldAccessor {
+
+		private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+		private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+		private final MethodHandle getter;
+
+		/** The setter - {@code null} for final fields. */
+		private final MethodHandle setter;
+
+		/** The getter without boxing - {@code null} for non primitive fields. */
+		private final MethodHandle primitiveGetter;
+
+		/** The setter without boxing - {@code null} for final or non primitive fields. */
+		private final MethodHandle primitiveSetter;
+
+		MethodHandleAccessor(final Field field) throws IllegalAccessException {
+			final MethodHandles.Lookup lookup = MethodHandles.lookup();
+			final MethodHandle fieldGetter = lookup.unreflectGetter(field);
+			final MethodHandle fieldSetter = Modifier.isFinal(field.getModifiers()) ? null
+					: lookup.unreflectSetter(field);
+			this.getter = fieldGetter.asType(GETTER_TYPE);
+			this.setter = fieldSetter == null ? null : fieldSetter.asType(SETTER_TYPE);
+			final Class<?> type = field.getType();
+			if (type.isPrimitive()) {
+				this.primitiveGetter = fieldGetter.asType(MethodType.methodType(type, Object.class));
+				this.primitiveSetter = fieldSetter == null ? null
+						: fieldSetter.asType(MethodType.methodType(void.class, Object.class, type));
+			} else {
+				this.primitiveGetter = null;
+				this.primitiveSetter = null;
+			}
+		}
+
+		@Override
+		Object get(final Object instance) {
+			try {
+				return this.getter.invokeExact(instance);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		boolean getBoolean(final Object instance) {
+			try {
+				return (boolean) this.primitiveGetter.invokeExact(instance);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		double getDouble(final Object instance) {
+			try {
+				return (double) this.primitiveGetter.invokeExact(instance);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		int getInt(final Object instance) {
+			try {
+				return (int) this.primitiveGetter.invokeExact(instance);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		long getLong(final Object instance) {
+			try {
+				return (long) this.primitiveGetter.invokeExact(instance);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		void set(final Object instance, final Object value) {
+			try {
+				this.setter.invokeExact(instance, value);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		void setBoolean(final Object instance, final boolean value) {
+			try {
+				this.primitiveSetter.invokeExact(instance, value);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		void setDouble(final Object instance, final double value) {
+			try {
+				this.primitiveSetter.invokeExact(instance, value);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		void setInt(final Object instance, final int value) {
+			try {
+				this.primitiveSetter.invokeExact(instance, value);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+		@Override
+		void setLong(final Object instance, final long value) {
+			try {
+				this.primitiveSetter.invokeExact(instance, value);
+			} catch (final Throwable e) {
+				throw Throwables.propagate(e);
+			}
+		}
+
+	}
+
+	/**
+	 * Creates the accessor for the given field.
+	 *
+	 * @param field
+	 *            the field to access, already {@link Field#setAccessible(boolean) accessible}
+	 * @param strategy
+	 *            the strategy to use
+	 * @return the accessor for the field
+	 */
+	static FieldAccessor create(final Field field, final FieldAccessStrategy strategy) {
+		if (strategy == FieldAccessStrategy.METHOD_HANDLES) {
+			try {
+				return new MethodHandleAccessor(field);
+			} catch (final IllegalAccessException e) {
+				// Fall back to reflection
+			}
+		}
+		return new ReflectionAccessor(field);
+	}
+
+	/**
+	 * Reads the value of the field.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the current value of the field, primitive values are boxed
+	 */
+	abstract Object get(final Object instance);
+
+	/**
+	 * Reads the value of a {@code boolean} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the current value of the field
+	 */
+	abstract boolean getBoolean(final Object instance);
+
+	/**
+	 * Reads the value of a {@code double} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the current value of the field
+	 */
+	abstract double getDouble(final Object instance);
+
+	/**
+	 * Reads the value of an {@code int} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the current value of the field
+	 */
+	abstract int getInt(final Object instance);
+
+	/**
+	 * Reads the value of a {@code long} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the current value of the field
+	 */
+	abstract long getLong(final Object instance);
+
+	/**
+	 * Writes the value of the field.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field, primitive values are unboxed
+	 */
+	abstract void set(final Object instance, final Object value);
+
+	/**
+	 * Writes the value of a {@code boolean} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	abstract void setBoolean(final Object instance, final boolean value);
+
+	/**
+	 * Writes the value of a {@code double} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	abstract void setDouble(final Object instance, final double value);
+
+	/**
+	 * Writes the value of an {@code int} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	abstract void setInt(final Object instance, final int value);
+
+	/**
+	 * Writes the value of a {@code long} field without boxing.
+	 *
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	abstract void setLong(final Object instance, final long value);
+
+}
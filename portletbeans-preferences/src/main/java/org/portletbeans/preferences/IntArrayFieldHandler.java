@@ -0,0 +1,35 @@
+package org.portletbeans.preferences;
+
+/**
+ * Handles the conversion of {@code int[]} fields into a multi-valued preference.
+ *
+ * @author Tobias Liefke
+ */
+public final class IntArrayFieldHandler extends PrimitiveArrayFieldHandler<int[]> {
+
+	/**
+	 * Creates the handler for {@code int[]} fields.
+	 */
+	public IntArrayFieldHandler() {
+		super(int[].class);
+	}
+
+	@Override
+	protected String[] format(final int[] value) {
+		final String[] result = new String[value.length];
+		for (int i = 0; i < value.length; i++) {
+			result[i] = String.valueOf(value[i]);
+		}
+		return result;
+	}
+
+	@Override
+	protected int[] parse(final String[] values) {
+		final int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Integer.parseInt(values[i]);
+		}
+		return result;
+	}
+
+}
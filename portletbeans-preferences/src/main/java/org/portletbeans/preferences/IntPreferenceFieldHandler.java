@@ -0,0 +1,47 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+/**
+ * Handles the load and store of a {@code int} {@link PreferenceField} without boxing.
+ *
+ * Used by the {@link PreferenceFieldRegistry} for all {@code int} fields, if the handler of the field implements this
+ * interface.
+ *
+ * @author Tobias Liefke
+ */
+public interface IntPreferenceFieldHandler extends PreferenceFieldHandler<Integer> {
+
+	/**
+	 * Loads a value from the preferences.
+	 *
+	 * @param preferences
+	 *            the current preferences
+	 * @param key
+	 *            the key for the field
+	 * @param defaultValue
+	 *            the default value given in the annotation
+	 * @param currentValue
+	 *            the current value of the field
+	 * @return the loaded value or the current value if none was stored
+	 */
+	int loadInt(final PortletPreferences preferences, final String key, final String defaultValue,
+			final int currentValue);
+
+	/**
+	 * Saves a value to the preferences.
+	 *
+	 * @param preferences
+	 *            the current preferences
+	 * @param key
+	 *            the key for the field
+	 * @param value
+	 *            the value of the field
+	 * @throws ReadOnlyException
+	 *             if the preference is readonly
+	 */
+	void storeInt(final PortletPreferences preferences, final String key, final int value)
+			throws ReadOnlyException;
+
+}
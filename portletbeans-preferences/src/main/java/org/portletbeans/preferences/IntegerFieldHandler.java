@@ -0,0 +1,81 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles the conversion of {@code int} and {@link Integer} values into preference values.
+ *
+ * Loads {@code int} fields without boxing and parses {@link Integer} values with {@link Integer#valueOf(String)}, which
+ * needs no reflection.
+ *
+ * @author Tobias Liefke
+ */
+@Slf4j
+public final class IntegerFieldHandler
+		implements ValueFieldHandler<Integer>, DefaultValueFieldHandler<Integer>, IntPreferenceFieldHandler {
+
+	@Override
+	public String format(final Integer value) {
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Integer load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		return parse(preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public int loadInt(final PortletPreferences preferences, final String key, final String defaultValue,
+			final int currentValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		if (value == null) {
+			return currentValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value for " + key + " to a int: " + value, e);
+			return currentValue;
+		}
+	}
+
+	@Override
+	public Integer loadOrDefault(final PortletPreferences preferences, final String key, final Integer defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : parse(value);
+	}
+
+	@Override
+	public Integer parse(final String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value to a Integer: " + value, e);
+			return null;
+		}
+	}
+
+	@Override
+	public Integer parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Integer value)
+			throws ReadOnlyException {
+		preferences.setValue(key, format(value));
+	}
+
+	@Override
+	public void storeInt(final PortletPreferences preferences, final String key, final int value)
+			throws ReadOnlyException {
+		preferences.setValue(key, String.valueOf(value));
+	}
+
+}
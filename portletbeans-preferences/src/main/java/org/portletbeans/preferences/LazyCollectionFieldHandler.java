@@ -0,0 +1,177 @@
+package org.portletbeans.preferences;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+import javax.portlet.PortletPreferences;
+
+import com.google.common.collect.ForwardingList;
+import com.google.common.collect.ForwardingSet;
+import com.google.common.collect.ForwardingSortedSet;
+
+/**
+ * Loads the elements of a collection only when the collection is accessed for the first time.
+ *
+ * Useful for collections of nested entities that are only needed in some requests. It is selected per field with
+ * {@link PreferenceField#handler()} and uses the same layout as the {@link CollectionFieldHandler}.
+ *
+ * The elements are read from the preferences that were given when the bean was loaded. So the collection should be
+ * accessed while these preferences are valid - usually during the current request - or the bean should be loaded with
+ * {@link PreferenceFieldRegistry#loadBulk(PortletPreferences, Object)}, which keeps a copy of all values. Final fields
+ * are always filled immediately.
+ *
+ * @author Tobias Liefke
+ * @param <E>
+ *            the type of the elements of the collection
+ */
+public class LazyCollectionFieldHandler<E> extends CollectionFieldHandler<E> {
+
+	/**
+	 * Loads the collection on the first access.
+	 *
+	 * Synchronized, as a loaded bean may be accessed by more than one thread.
+	 */
+	private final class Loader {
+
+		private PortletPreferences preferences;
+
+		private final String key;
+
+		private final String defaultValue;
+
+		private Collection<E> values;
+
+		Loader(final PortletPreferences preferences, final String key, final String defaultValue) {
+			this.preferences = preferences;
+			this.key = key;
+			this.defaultValue = defaultValue;
+		}
+
+		synchronized Collection<E> get() {
+			if (this.values == null) {
+				this.values = LazyCollectionFieldHandler.super.load(this.preferences, this.key, this.defaultValue);
+				// Release the preferences
+				this.preferences = null;
+			}
+			return this.values;
+		}
+
+	}
+
+	/**
+	 * A list that is loaded on the first access.
+	 */
+	private final class LazyList extends ForwardingList<E> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Loader loader;
+
+		LazyList(final Loader loader) {
+			this.loader = loader;
+		}
+
+		@Override
+		protected List<E> delegate() {
+			return (List<E>) this.loader.get();
+		}
+
+		/**
+		 * Serializes the loaded collection instead of this wrapper.
+		 *
+		 * @return the loaded collection
+		 */
+		private Object writeReplace() {
+			return delegate();
+		}
+
+	}
+
+	/**
+	 * A set that is loaded on the first access.
+	 */
+	private final class LazySet extends ForwardingSet<E> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Loader loader;
+
+		LazySet(final Loader loader) {
+			this.loader = loader;
+		}
+
+		@Override
+		protected Set<E> delegate() {
+			return (Set<E>) this.loader.get();
+		}
+
+		/**
+		 * Serializes the loaded collection instead of this wrapper.
+		 *
+		 * @return the loaded collection
+		 */
+		private Object writeReplace() {
+			return delegate();
+		}
+
+	}
+
+	/**
+	 * A sorted set that is loaded on the first access.
+	 */
+	private final class LazySortedSet extends ForwardingSortedSet<E> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Loader loader;
+
+		LazySortedSet(final Loader loader) {
+			this.loader = loader;
+		}
+
+		@Override
+		protected SortedSet<E> delegate() {
+			return (SortedSet<E>) this.loader.get();
+		}
+
+		/**
+		 * Serializes the loaded collection instead of this wrapper.
+		 *
+		 * @return the loaded collection
+		 */
+		private Object writeReplace() {
+			return delegate();
+		}
+
+	}
+
+	/** The declared type of the field. */
+	private final Class<?> fieldType;
+
+	/**
+	 * Constructs a LazyCollectionFieldHandler for the given field.
+	 *
+	 * @param field
+	 *            the field to handle
+	 */
+	public LazyCollectionFieldHandler(final Field field) {
+		super(field);
+		this.fieldType = field.getType();
+	}
+
+	@Override
+	public Collection<E> load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final Loader loader = new Loader(preferences, key, defaultValue);
+		if (this.fieldType == SortedSet.class) {
+			return new LazySortedSet(loader);
+		} else if (this.fieldType == Set.class) {
+			return new LazySet(loader);
+		}
+		return new LazyList(loader);
+	}
+
+}
@@ -0,0 +1,145 @@
+package org.portletbeans.preferences;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.portlet.PortletPreferences;
+
+import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ForwardingSortedMap;
+
+/**
+ * Loads the entries of a map only when the map is accessed for the first time.
+ *
+ * Useful for maps of nested entities that are only needed in some requests. It is selected per field with
+ * {@link PreferenceField#handler()} and uses the same layout as the {@link MapFieldHandler}.
+ *
+ * The entries are read from the preferences that were given when the bean was loaded, see
+ * {@link LazyCollectionFieldHandler} for the restrictions. Only fields declared as {@link Map} or {@link SortedMap}
+ * are loaded lazily, all other fields are filled immediately.
+ *
+ * @author Tobias Liefke
+ * @param <K>
+ *            the type of the keys of the map
+ * @param <V>
+ *            the type of the values of the map
+ */
+public class LazyMapFieldHandler<K, V> extends MapFieldHandler<K, V> {
+
+	/**
+	 * Loads the map on the first access.
+	 *
+	 * Synchronized, as a loaded bean may be accessed by more than one thread.
+	 */
+	private final class Loader {
+
+		private PortletPreferences preferences;
+
+		private final String key;
+
+		private final String defaultValue;
+
+		private Map<K, V> values;
+
+		Loader(final PortletPreferences preferences, final String key, final String defaultValue) {
+			this.preferences = preferences;
+			this.key = key;
+			this.defaultValue = defaultValue;
+		}
+
+		synchronized Map<K, V> get() {
+			if (this.values == null) {
+				this.values = LazyMapFieldHandler.super.load(this.preferences, this.key, this.defaultValue);
+				// Release the preferences
+				this.preferences = null;
+			}
+			return this.values;
+		}
+
+	}
+
+	/**
+	 * A map that is loaded on the first access.
+	 */
+	private final class LazyMap extends ForwardingMap<K, V> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Loader loader;
+
+		LazyMap(final Loader loader) {
+			this.loader = loader;
+		}
+
+		@Override
+		protected Map<K, V> delegate() {
+			return this.loader.get();
+		}
+
+		/**
+		 * Serializes the loaded map instead of this wrapper.
+		 *
+		 * @return the loaded map
+		 */
+		private Object writeReplace() {
+			return delegate();
+		}
+
+	}
+
+	/**
+	 * A sorted map that is loaded on the first access.
+	 */
+	private final class LazySortedMap extends ForwardingSortedMap<K, V> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Loader loader;
+
+		LazySortedMap(final Loader loader) {
+			this.loader = loader;
+		}
+
+		@Override
+		protected SortedMap<K, V> delegate() {
+			return (SortedMap<K, V>) this.loader.get();
+		}
+
+		/**
+		 * Serializes the loaded map instead of this wrapper.
+		 *
+		 * @return the loaded map
+		 */
+		private Object writeReplace() {
+			return delegate();
+		}
+
+	}
+
+	/** The declared type of the field. */
+	private final Class<?> fieldType;
+
+	/**
+	 * Constructs a LazyMapFieldHandler for the given field.
+	 *
+	 * @param field
+	 *            the field to handle
+	 */
+	public LazyMapFieldHandler(final Field field) {
+		super(field);
+		this.fieldType = field.getType();
+	}
+
+	@Override
+	public Map<K, V> load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		if (this.fieldType == Map.class) {
+			return new LazyMap(new Loader(preferences, key, defaultValue));
+		} else if (this.fieldType == SortedMap.class) {
+			return new LazySortedMap(new Loader(preferences, key, defaultValue));
+		}
+		return super.load(preferences, key, defaultValue);
+	}
+
+}
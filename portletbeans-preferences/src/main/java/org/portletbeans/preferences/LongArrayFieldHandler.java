@@ -0,0 +1,35 @@
+package org.portletbeans.preferences;
+
+/**
+ * Handles the conversion of {@code long[]} fields into a multi-valued preference.
+ *
+ * @author Tobias Liefke
+ */
+public final class LongArrayFieldHandler extends PrimitiveArrayFieldHandler<long[]> {
+
+	/**
+	 * Creates the handler for {@code long[]} fields.
+	 */
+	public LongArrayFieldHandler() {
+		super(long[].class);
+	}
+
+	@Override
+	protected String[] format(final long[] value) {
+		final String[] result = new String[value.length];
+		for (int i = 0; i < value.length; i++) {
+			result[i] = String.valueOf(value[i]);
+		}
+		return result;
+	}
+
+	@Override
+	protected long[] parse(final String[] values) {
+		final long[] result = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = Long.parseLong(values[i]);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles the conversion of {@code long} and {@link Long} values into preference values.
+ *
+ * Loads {@code long} fields without boxing and parses {@link Long} values with {@link Long#valueOf(String)}, which
+ * needs no reflection.
+ *
+ * @author Tobias Liefke
+ */
+@Slf4j
+public final class LongFieldHandler
+		implements ValueFieldHandler<Long>, DefaultValueFieldHandler<Long>, LongPreferenceFieldHandler {
+
+	@Override
+	public String format(final Long value) {
+		return value == null ? null : value.toString();
+	}
+
+	@Override
+	public Long load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		return parse(preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public long loadLong(final PortletPreferences preferences, final String key, final String defaultValue,
+			final long currentValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		if (value == null) {
+			return currentValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value for " + key + " to a long: " + value, e);
+			return currentValue;
+		}
+	}
+
+	@Override
+	public Long loadOrDefault(final PortletPreferences preferences, final String key, final Long defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : parse(value);
+	}
+
+	@Override
+	public Long parse(final String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value to a Long: " + value, e);
+			return null;
+		}
+	}
+
+	@Override
+	public Long parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Long value)
+			throws ReadOnlyException {
+		preferences.setValue(key, format(value));
+	}
+
+	@Override
+	public void storeLong(final PortletPreferences preferences, final String key, final long value)
+			throws ReadOnlyException {
+		preferences.setValue(key, String.valueOf(value));
+	}
+
+}
@@ -1,19 +1,32 @@
 package org.portletbeans.preferences;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import javax.portlet.PortletPreferences;
 import javax.portlet.ReadOnlyException;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+
 import org.apache.commons.lang3.StringUtils;
 
 /**
  * Handles the conversion of maps fields to / from preference fields.
  *
+ * Loaded maps are created according to the declared type of the field: {@link java.util.SortedMap} and
+ * {@link java.util.NavigableMap} fields get a {@link TreeMap}, {@link EnumMap} fields an {@link EnumMap} and all other
+ * {@link Map} and {@link java.util.HashMap} fields a {@link LinkedHashMap}, which is pre-sized for the stored entries.
+ * Other declared map types need a public default constructor, unless the field is final.
+ *
  * @author Tobias Liefke
  * @param <K>
  *            the type of the keys of the map
@@ -22,8 +35,24 @@ import org.apache.commons.lang3.StringUtils;
  */
 public class MapFieldHandler<K, V> implements FinalFieldHandler<Map<K, V>> {
 
+	/** The default load factor of hash maps. */
+	private static final float LOAD_FACTOR = 0.75f;
+
+	/** Reads maps that were stored as serialized objects, before the declared map type was supported. */
+	private static final SerializableFieldHandler SERIALIZED_HANDLER = new SerializableFieldHandler();
+
+	/** The implementation of the map, created for the declared type of the field. */
+	private final Class<?> mapClass;
+
+	/** The type of the keys in the map. */
+	private final Class<K> keyClass;
+
+	/** The handler of the keys in the map. */
+	@Getter(AccessLevel.PROTECTED)
 	private final PreferenceFieldHandler<K> keyHandler;
 
+	/** The handler of the values in the map. */
+	@Getter(AccessLevel.PROTECTED)
 	private final PreferenceFieldHandler<V> valueHandler;
 
 	/**
@@ -33,59 +62,194 @@ public class MapFieldHandler<K, V> implements FinalFieldHandler<Map<K, V>> {
 	 *            the field to handle
 	 */
 	public MapFieldHandler(final Field field) {
+		final String error = validate(field);
+		if (error != null) {
+			throw new IllegalArgumentException(error + ": " + field);
+		}
+		this.mapClass = getMapClass(field.getType());
+		final Type[] typeArguments = ((ParameterizedType) field.getGenericType()).getActualTypeArguments();
+		this.keyClass = (Class<K>) typeArguments[0];
+		this.keyHandler = PreferenceFieldRegistry.findDefaultHandler(null, this.keyClass);
+		this.valueHandler = PreferenceFieldRegistry.findDefaultHandler(null, (Class<V>) typeArguments[1]);
+	}
+
+	/**
+	 * Indicates that a field can be handled by this handler.
+	 *
+	 * @param field
+	 *            the map field
+	 * @return {@code true} if the field declares explicit key and value classes and its map can be created
+	 */
+	static boolean isSupported(final Field field) {
+		return validate(field) == null;
+	}
+
+	private static String validate(final Field field) {
 		final Type type = field.getGenericType();
-		if (!(type instanceof ParameterizedType)) {
-			throw new IllegalArgumentException("Map field must specify the key and value type: " + field);
+		if (!(type instanceof ParameterizedType)
+				|| ((ParameterizedType) type).getActualTypeArguments().length != 2) {
+			return "Map field must specify the key and value type";
 		}
-		final ParameterizedType parameterizedType = (ParameterizedType) type;
-		if (parameterizedType.getActualTypeArguments().length != 2) {
-			throw new IllegalArgumentException("Map field must specify the key and value type: " + field);
+		final Type[] typeArguments = ((ParameterizedType) type).getActualTypeArguments();
+		if (!(typeArguments[0] instanceof Class) || !(typeArguments[1] instanceof Class)) {
+			return "Needs explicit key and value type";
 		}
-		if (!(parameterizedType.getActualTypeArguments()[0] instanceof Class)
-				|| !(parameterizedType.getActualTypeArguments()[1] instanceof Class)) {
-			throw new IllegalArgumentException("Needs explicit key and value type: " + field);
+		final Class<?> mapClass = getMapClass(field.getType());
+		if (mapClass == null) {
+			return "Can't handle map field";
+		}
+		if (mapClass == EnumMap.class && !((Class<?>) typeArguments[0]).isEnum()) {
+			return "Enum map field needs an enum key type";
+		}
+		// Final fields keep their current map, all others need a new instance of the declared type
+		if (mapClass == field.getType() && mapClass != EnumMap.class && !Modifier.isFinal(field.getModifiers())
+				&& !isInstantiable(mapClass)) {
+			return "Can't instantiate the declared map type";
+		}
+		return null;
+	}
+
+	private static Class<?> getMapClass(final Class<?> type) {
+		if (type.isAssignableFrom(LinkedHashMap.class)) {
+			return LinkedHashMap.class;
+		} else if (type.isAssignableFrom(TreeMap.class)) {
+			return TreeMap.class;
+		} else if (type == EnumMap.class) {
+			return EnumMap.class;
+		} else if (Map.class.isAssignableFrom(type)) {
+			return type;
+		}
+		return null;
+	}
+
+	private static boolean isInstantiable(final Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+			return false;
+		}
+		try {
+			type.getConstructor();
+			return true;
+		} catch (final NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the map for a loaded field.
+	 *
+	 * @param expectedSize
+	 *            the count of entries that will be put into the map
+	 * @return the new map, which has the declared type of the field and holds the expected entries without rehashing
+	 */
+	protected Map<K, V> createMap(final int expectedSize) {
+		if (this.mapClass == LinkedHashMap.class) {
+			return new LinkedHashMap<>((int) (expectedSize / LOAD_FACTOR) + 1);
+		} else if (this.mapClass == TreeMap.class) {
+			return new TreeMap<>();
+		} else if (this.mapClass == EnumMap.class) {
+			return new EnumMap(this.keyClass);
+		}
+		try {
+			return (Map<K, V>) this.mapClass.newInstance();
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't instantiate map class " + this.mapClass + ": " + e, e);
 		}
-		final Class<K> keyClass = (Class<K>) parameterizedType.getActualTypeArguments()[0];
-		this.keyHandler = PreferenceFieldRegistry.findDefaultHandler(null, keyClass);
-		final Class<V> valueClass = (Class<V>) parameterizedType.getActualTypeArguments()[1];
-		this.valueHandler = PreferenceFieldRegistry.findDefaultHandler(null, valueClass);
 	}
 
 	@Override
 	public void load(final Map<K, V> currentValue, final PortletPreferences preferences, final String key,
 			final String defaultValue) {
-		try {
-			currentValue.clear();
-			final int length = Integer.parseInt(preferences.getValue(key + ".length",
-					StringUtils.isEmpty(defaultValue) ? "0" : defaultValue));
-			for (int i = 0; i < length; i++) {
-				currentValue.put(this.keyHandler.load(preferences, key + '.' + i + 'k', ""),
-						this.valueHandler.load(preferences, key + '.' + i + 'v', ""));
+		currentValue.clear();
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		final String length = preferences.getValue(keys.getLengthKey(), null);
+		if (length == null) {
+			final Map<K, V> serialized = loadSerialized(preferences, key);
+			if (serialized != null) {
+				currentValue.putAll(serialized);
+				return;
 			}
-		} catch (final NumberFormatException e) {
-			// Ignore and return the empty result
 		}
+		loadEntries(currentValue, preferences, keys, parseLength(length, defaultValue));
 	}
 
 	@Override
 	public Map<K, V> load(final PortletPreferences preferences, final String key, final String defaultValue) {
-		final Map<K, V> result = new HashMap<>();
-		load(result, preferences, key, defaultValue);
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		final String storedLength = preferences.getValue(keys.getLengthKey(), null);
+		if (storedLength == null) {
+			final Map<K, V> serialized = loadSerialized(preferences, key);
+			if (serialized != null) {
+				final Map<K, V> result = createMap(serialized.size());
+				result.putAll(serialized);
+				return result;
+			}
+		}
+		final int length = parseLength(storedLength, defaultValue);
+		final Map<K, V> result = createMap(length);
+		loadEntries(result, preferences, keys, length);
 		return result;
 	}
 
+	private void loadEntries(final Map<K, V> map, final PortletPreferences preferences, final PreferenceKeys keys,
+			final int length) {
+		for (int i = 0; i < length; i++) {
+			map.put(this.keyHandler.load(preferences, keys.getEntryKeyKey(i), ""),
+					this.valueHandler.load(preferences, keys.getEntryValueKey(i), ""));
+		}
+	}
+
+	/**
+	 * Reads a map that was stored as serialized object, if the map is not stored in the indexed layout.
+	 */
+	private static <K, V> Map<K, V> loadSerialized(final PortletPreferences preferences, final String key) {
+		if (preferences.getValue(key, null) == null) {
+			// Nothing was serialized - don't try to decode the default
+			return null;
+		}
+		final Object value = SERIALIZED_HANDLER.load(preferences, key, null);
+		return value instanceof Map ? (Map<K, V>) value : null;
+	}
+
+	private static int parseLength(final String length, final String defaultValue) {
+		if (length == null && StringUtils.isEmpty(defaultValue)) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(length == null ? defaultValue : length);
+		} catch (final NumberFormatException e) {
+			// Ignore and return the empty result
+			return 0;
+		}
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final Map<K, V> values)
 			throws ReadOnlyException {
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		final int previousLength = PreferenceFieldRegistry.getLength(preferences, keys);
 		int index = 0;
 		if (values != null) {
 			for (final Map.Entry<K, V> entry : values.entrySet()) {
-				this.keyHandler.store(preferences, key + '.' + index + 'k', entry.getKey());
-				this.valueHandler.store(preferences, key + '.' + index + 'v', entry.getValue());
+				this.keyHandler.store(preferences, keys.getEntryKeyKey(index), entry.getKey());
+				this.valueHandler.store(preferences, keys.getEntryValueKey(index), entry.getValue());
 				index++;
 			}
 		}
-		preferences.setValue(key + ".length", String.valueOf(index));
+		preferences.setValue(keys.getLengthKey(), String.valueOf(index));
+		if (previousLength == 0 && preferences.getValue(key, null) != null) {
+			// Remove the serialized map
+			preferences.reset(key);
+		}
+
+		// Remove the entries that are not used anymore
+		if (index < previousLength) {
+			final Set<String> removedKeys = new HashSet<>();
+			for (int i = index; i < previousLength; i++) {
+				removedKeys.add(keys.getEntryKeyKey(i));
+				removedKeys.add(keys.getEntryValueKey(i));
+			}
+			PreferenceFieldRegistry.resetKeys(preferences, removedKeys);
+		}
 	}
 
 }
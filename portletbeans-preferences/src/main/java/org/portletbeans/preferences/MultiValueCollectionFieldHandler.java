@@ -0,0 +1,86 @@
+package org.portletbeans.preferences;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+/**
+ * Stores all elements of a collection as the values of a single multi-valued preference.
+ *
+ * The {@link CollectionFieldHandler} uses one preference for the length and one for every element, while this handler
+ * uses only one key for the whole collection. It is selected per field with {@link PreferenceField#handler()} and
+ * supports all element types that are handled by a {@link ValueFieldHandler}.
+ *
+ * Preferences that were written in the indexed layout of the {@link CollectionFieldHandler} are still read and are
+ * converted to the compact layout on the next store.
+ *
+ * @author Tobias Liefke
+ * @param <E>
+ *            the type of the elements of the collection
+ */
+public class MultiValueCollectionFieldHandler<E> extends CollectionFieldHandler<E> {
+
+	private final ValueFieldHandler<E> valueHandler;
+
+	/**
+	 * Constructs a MultiValueCollectionFieldHandler for the given field.
+	 *
+	 * @param field
+	 *            the field to handle
+	 */
+	public MultiValueCollectionFieldHandler(final Field field) {
+		super(field);
+		if (!(getElementHandler() instanceof ValueFieldHandler)) {
+			throw new IllegalArgumentException("Can't store the elements of the field as multiple values: " + field);
+		}
+		this.valueHandler = (ValueFieldHandler<E>) getElementHandler();
+	}
+
+	@Override
+	public void load(final Collection<E> currentValue, final PortletPreferences preferences, final String key,
+			final String defaultValue) {
+		final String[] values = preferences.getValues(key, null);
+		if (values == null) {
+			// Not stored yet or stored in the indexed layout
+			super.load(currentValue, preferences, key, defaultValue);
+			return;
+		}
+		currentValue.clear();
+		for (final String value : values) {
+			currentValue.add(this.valueHandler.parse(value));
+		}
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Collection<E> values)
+			throws ReadOnlyException {
+		final String[] formatted;
+		if (values == null) {
+			formatted = new String[0];
+		} else {
+			formatted = new String[values.size()];
+			int index = 0;
+			for (final E element : values) {
+				formatted[index++] = this.valueHandler.format(element);
+			}
+		}
+		preferences.setValues(key, formatted);
+
+		// Remove any previous indexed layout
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		if (preferences.getValue(keys.getLengthKey(), null) != null) {
+			final int previousLength = PreferenceFieldRegistry.getLength(preferences, keys);
+			final Set<String> removedKeys = new HashSet<>();
+			removedKeys.add(keys.getLengthKey());
+			for (int i = 0; i < previousLength; i++) {
+				removedKeys.add(keys.getElementKey(i));
+			}
+			PreferenceFieldRegistry.resetKeys(preferences, removedKeys);
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package org.portletbeans.preferences;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+/**
+ * Stores all entries of a map as the values of a single multi-valued preference.
+ *
+ * The values of the preference alternate between the keys and the values of the map: {@code [k0, v0, k1, v1, ...]}.
+ * In contrast to the {@link MapFieldHandler}, which uses two preferences per entry and one for the length, this
+ * handler uses only one key for the whole map. It is selected per field with {@link PreferenceField#handler()} and
+ * supports all key and value types that are handled by a {@link ValueFieldHandler}.
+ *
+ * Preferences that were written in the indexed layout of the {@link MapFieldHandler} are still read and are converted
+ * to the compact layout on the next store.
+ *
+ * @author Tobias Liefke
+ * @param <K>
+ *            the type of the keys of the map
+ * @param <V>
+ *            the type of the values of the map
+ */
+public class MultiValueMapFieldHandler<K, V> extends MapFieldHandler<K, V> {
+
+	private final ValueFieldHandler<K> keyValueHandler;
+
+	private final ValueFieldHandler<V> valueValueHandler;
+
+	/**
+	 * Constructs a MultiValueMapFieldHandler for the given field.
+	 *
+	 * @param field
+	 *            the field to handle
+	 */
+	public MultiValueMapFieldHandler(final Field field) {
+		super(field);
+		if (!(getKeyHandler() instanceof ValueFieldHandler) || !(getValueHandler() instanceof ValueFieldHandler)) {
+			throw new IllegalArgumentException("Can't store the entries of the field as multiple values: " + field);
+		}
+		this.keyValueHandler = (ValueFieldHandler<K>) getKeyHandler();
+		this.valueValueHandler = (ValueFieldHandler<V>) getValueHandler();
+	}
+
+	@Override
+	public void load(final Map<K, V> currentValue, final PortletPreferences preferences, final String key,
+			final String defaultValue) {
+		final String[] values = preferences.getValues(key, null);
+		if (values == null) {
+			// Not stored yet or stored in the indexed layout
+			super.load(currentValue, preferences, key, defaultValue);
+			return;
+		}
+		currentValue.clear();
+		loadEntries(currentValue, values);
+	}
+
+	@Override
+	public Map<K, V> load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final String[] values = preferences.getValues(key, null);
+		if (values == null) {
+			// Not stored yet or stored in the indexed layout
+			return super.load(preferences, key, defaultValue);
+		}
+		final Map<K, V> result = createMap(values.length / 2);
+		loadEntries(result, values);
+		return result;
+	}
+
+	private void loadEntries(final Map<K, V> map, final String[] values) {
+		for (int i = 1; i < values.length; i += 2) {
+			map.put(this.keyValueHandler.parse(values[i - 1]), this.valueValueHandler.parse(values[i]));
+		}
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Map<K, V> values)
+			throws ReadOnlyException {
+		final String[] formatted;
+		if (values == null) {
+			formatted = new String[0];
+		} else {
+			formatted = new String[values.size() * 2];
+			int index = 0;
+			for (final Map.Entry<K, V> entry : values.entrySet()) {
+				formatted[index++] = this.keyValueHandler.format(entry.getKey());
+				formatted[index++] = this.valueValueHandler.format(entry.getValue());
+			}
+		}
+		preferences.setValues(key, formatted);
+
+		// Remove any previous indexed layout
+		final PreferenceKeys keys = PreferenceKeys.of(key);
+		if (preferences.getValue(keys.getLengthKey(), null) != null) {
+			final int previousLength = PreferenceFieldRegistry.getLength(preferences, keys);
+			final Set<String> removedKeys = new HashSet<>();
+			removedKeys.add(keys.getLengthKey());
+			for (int i = 0; i < previousLength; i++) {
+				removedKeys.add(keys.getEntryKeyKey(i));
+				removedKeys.add(keys.getEntryValueKey(i));
+			}
+			PreferenceFieldRegistry.resetKeys(preferences, removedKeys);
+		}
+	}
+
+}
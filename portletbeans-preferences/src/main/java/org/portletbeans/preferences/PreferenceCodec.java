@@ -0,0 +1,48 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+
+/**
+ * Loads and stores all preference fields of one class without any reflection.
+ *
+ * Implementations are generated at compile time by the {@code portletbeans-processor} for every class with
+ * {@link PreferenceEntity} or {@link PreferenceField} annotations. The generated class is named like the bean class
+ * with the suffix {@value #CODEC_SUFFIX} and is used automatically by the {@link PreferenceFieldRegistry}, if found on
+ * the classpath.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the handled bean
+ */
+public interface PreferenceCodec<T> {
+
+	/**
+	 * The suffix of the name of generated codecs.
+	 */
+	String CODEC_SUFFIX = "PreferenceCodec";
+
+	/**
+	 * Loads all preference fields of a bean.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param prefix
+	 *            the prefix for all used keys, {@code null} if none is needed
+	 * @param instance
+	 *            the bean to fill
+	 */
+	void load(final PortletPreferences preferences, final String prefix, final T instance);
+
+	/**
+	 * Stores all preference fields of a bean.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param prefix
+	 *            the prefix for all used keys, {@code null} if none is needed
+	 * @param instance
+	 *            the bean to store
+	 */
+	void store(final PortletPreferences preferences, final String prefix, final T instance);
+
+}
@@ -0,0 +1,323 @@
+package org.portletbeans.preferences;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Helper methods for the generated {@link PreferenceCodec}s.
+ *
+ * All methods that inspect a class are only called once per field, when a generated codec is initialized.
+ *
+ * @author Tobias Liefke
+ */
+public final class PreferenceCodecSupport {
+
+	private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private static Field findField(final Class<?> declaringClass, final String fieldName) {
+		try {
+			final Field field = declaringClass.getDeclaredField(fieldName);
+			field.setAccessible(true);
+			return field;
+		} catch (final NoSuchFieldException e) {
+			throw new IllegalArgumentException("Generated codec does not match " + declaringClass, e);
+		}
+	}
+
+	/**
+	 * Parses the default value of a field in advance, according to the rules of the {@link PreferenceFieldRegistry}.
+	 *
+	 * @param handler
+	 *            the handler of the field
+	 * @param defaultValue
+	 *            the default value given in the annotation
+	 * @return the parsed default value or {@code null} if it has to be parsed for every load
+	 */
+	public static <T> T defaultValue(final PreferenceFieldHandler<T> handler, final String defaultValue) {
+		return PreferenceFieldRegistry.parseDefaultValue(handler, defaultValue);
+	}
+
+	/**
+	 * Reads a field with a getter created by {@link #getter(Class, String)}.
+	 *
+	 * @param getter
+	 *            the method handle of the getter
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the value of the field
+	 */
+	public static Object get(final MethodHandle getter, final Object instance) {
+		try {
+			return getter.invokeExact(instance);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Reads a {@code boolean} field with a getter created by {@link #unboxedGetter(Class, String)}.
+	 *
+	 * @param getter
+	 *            the method handle of the getter
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the value of the field
+	 */
+	public static boolean getBoolean(final MethodHandle getter, final Object instance) {
+		try {
+			return (boolean) getter.invokeExact(instance);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Reads a {@code double} field with a getter created by {@link #unboxedGetter(Class, String)}.
+	 *
+	 * @param getter
+	 *            the method handle of the getter
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the value of the field
+	 */
+	public static double getDouble(final MethodHandle getter, final Object instance) {
+		try {
+			return (double) getter.invokeExact(instance);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Reads a {@code int} field with a getter created by {@link #unboxedGetter(Class, String)}.
+	 *
+	 * @param getter
+	 *            the method handle of the getter
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the value of the field
+	 */
+	public static int getInt(final MethodHandle getter, final Object instance) {
+		try {
+			return (int) getter.invokeExact(instance);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Reads a {@code long} field with a getter created by {@link #unboxedGetter(Class, String)}.
+	 *
+	 * @param getter
+	 *            the method handle of the getter
+	 * @param instance
+	 *            the object that contains the field
+	 * @return the value of the field
+	 */
+	public static long getLong(final MethodHandle getter, final Object instance) {
+		try {
+			return (long) getter.invokeExact(instance);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Creates the getter for a field that is not visible to the generated codec.
+	 *
+	 * @param declaringClass
+	 *            the class that declares the field
+	 * @param fieldName
+	 *            the name of the field
+	 * @return the getter, which takes the instance and returns the (boxed) value
+	 */
+	public static MethodHandle getter(final Class<?> declaringClass, final String fieldName) {
+		try {
+			return MethodHandles.lookup().unreflectGetter(findField(declaringClass, fieldName)).asType(GETTER_TYPE);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access field " + fieldName + " of " + declaringClass, e);
+		}
+	}
+
+	/**
+	 * Resolves the handler for a preference field, according to the rules of the {@link PreferenceFieldRegistry}.
+	 *
+	 * @param declaringClass
+	 *            the class that declares the field
+	 * @param fieldName
+	 *            the name of the field
+	 * @return the handler for the field
+	 */
+	public static <T> PreferenceFieldHandler<T> handler(final Class<?> declaringClass, final String fieldName) {
+		return PreferenceFieldRegistry.findFieldHandler(findField(declaringClass, fieldName));
+	}
+
+	/**
+	 * Builds the preference key for a field.
+	 *
+	 * @param prefix
+	 *            the prefix given to the codec, {@code null} if none is needed
+	 * @param key
+	 *            the key of the field
+	 * @return the key in the preferences
+	 */
+	public static String key(final String prefix, final String key) {
+		return PreferenceKeys.concat(prefix, key);
+	}
+
+	/**
+	 * Writes a field with a setter created by {@link #setter(Class, String)}.
+	 *
+	 * @param setter
+	 *            the method handle of the setter
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	public static void set(final MethodHandle setter, final Object instance, final Object value) {
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Writes a {@code boolean} field with a setter created by {@link #unboxedSetter(Class, String)}.
+	 *
+	 * @param setter
+	 *            the method handle of the setter
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	public static void setBoolean(final MethodHandle setter, final Object instance, final boolean value) {
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Writes a {@code double} field with a setter created by {@link #unboxedSetter(Class, String)}.
+	 *
+	 * @param setter
+	 *            the method handle of the setter
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	public static void setDouble(final MethodHandle setter, final Object instance, final double value) {
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Writes a {@code int} field with a setter created by {@link #unboxedSetter(Class, String)}.
+	 *
+	 * @param setter
+	 *            the method handle of the setter
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	public static void setInt(final MethodHandle setter, final Object instance, final int value) {
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Writes a {@code long} field with a setter created by {@link #unboxedSetter(Class, String)}.
+	 *
+	 * @param setter
+	 *            the method handle of the setter
+	 * @param instance
+	 *            the object that contains the field
+	 * @param value
+	 *            the new value of the field
+	 */
+	public static void setLong(final MethodHandle setter, final Object instance, final long value) {
+		try {
+			setter.invokeExact(instance, value);
+		} catch (final Throwable e) {
+			throw Throwables.propagate(e);
+		}
+	}
+
+	/**
+	 * Creates the setter for a field that is not visible to the generated codec.
+	 *
+	 * @param declaringClass
+	 *            the class that declares the field
+	 * @param fieldName
+	 *            the name of the field
+	 * @return the setter, which takes the instance and the (boxed) value
+	 */
+	public static MethodHandle setter(final Class<?> declaringClass, final String fieldName) {
+		try {
+			return MethodHandles.lookup().unreflectSetter(findField(declaringClass, fieldName)).asType(SETTER_TYPE);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access field " + fieldName + " of " + declaringClass, e);
+		}
+	}
+
+	/**
+	 * Creates the getter for a primitive field that is not visible to the generated codec.
+	 *
+	 * @param declaringClass
+	 *            the class that declares the field
+	 * @param fieldName
+	 *            the name of the field
+	 * @return the getter, which takes the instance and returns the value without boxing
+	 */
+	public static MethodHandle unboxedGetter(final Class<?> declaringClass, final String fieldName) {
+		final Field field = findField(declaringClass, fieldName);
+		try {
+			return MethodHandles.lookup().unreflectGetter(field)
+					.asType(MethodType.methodType(field.getType(), Object.class));
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access field " + fieldName + " of " + declaringClass, e);
+		}
+	}
+
+	/**
+	 * Creates the setter for a primitive field that is not visible to the generated codec.
+	 *
+	 * @param declaringClass
+	 *            the class that declares the field
+	 * @param fieldName
+	 *            the name of the field
+	 * @return the setter, which takes the instance and the value without boxing
+	 */
+	public static MethodHandle unboxedSetter(final Class<?> declaringClass, final String fieldName) {
+		final Field field = findField(declaringClass, fieldName);
+		try {
+			return MethodHandles.lookup().unreflectSetter(field)
+					.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access field " + fieldName + " of " + declaringClass, e);
+		}
+	}
+
+	private PreferenceCodecSupport() {
+		// Helper class
+	}
+
+}
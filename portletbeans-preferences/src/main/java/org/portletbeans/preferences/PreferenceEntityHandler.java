@@ -1,8 +1,12 @@
 package org.portletbeans.preferences;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.util.LinkedList;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
@@ -18,9 +22,17 @@ import javax.portlet.ReadOnlyException;
  */
 public class PreferenceEntityHandler<E> implements FinalFieldHandler<E> {
 
+	private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+	private static final MethodType POST_CONSTRUCT_TYPE = MethodType.methodType(void.class, Object.class);
+
 	private final Class<E> type;
 
-	private final List<Method> postConstructMethods = new LinkedList<>();
+	/** The default constructor, {@code null} if the type can't be instantiated. */
+	private final MethodHandle constructor;
+
+	/** The {@link PostConstruct} methods, the methods of the superclasses first. */
+	private final MethodHandle[] postConstructMethods;
 
 	/**
 	 * Creates a new instance of PreferenceEntityHandler.
@@ -30,20 +42,43 @@ public class PreferenceEntityHandler<E> implements FinalFieldHandler<E> {
 	 */
 	public PreferenceEntityHandler(final Class<E> type) {
 		this.type = type;
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		this.constructor = findConstructor(lookup, type);
+		final List<MethodHandle> methods = new ArrayList<>();
 		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
 			for (final Method method : c.getDeclaredMethods()) {
 				if (method.getAnnotation(PostConstruct.class) != null) {
-					this.postConstructMethods.add(0, method);
+					method.setAccessible(true);
+					try {
+						methods.add(0, lookup.unreflect(method).asType(POST_CONSTRUCT_TYPE));
+					} catch (final IllegalAccessException e) {
+						throw new IllegalArgumentException("Can't access " + method, e);
+					}
 				}
 			}
 		}
+		this.postConstructMethods = methods.toArray(new MethodHandle[methods.size()]);
+	}
+
+	private static MethodHandle findConstructor(final MethodHandles.Lookup lookup, final Class<?> type) {
+		if (Modifier.isAbstract(type.getModifiers())) {
+			return null;
+		}
+		try {
+			final Constructor<?> defaultConstructor = type.getDeclaredConstructor();
+			defaultConstructor.setAccessible(true);
+			return lookup.unreflectConstructor(defaultConstructor).asType(CONSTRUCTOR_TYPE);
+		} catch (final NoSuchMethodException | IllegalAccessException e) {
+			// Only entities that are referenced from final fields
+			return null;
+		}
 	}
 
 	@Override
 	public void load(final E currentValue, final PortletPreferences preferences, final String key,
 			final String defaultValue) {
 		if (preferences.getValue(key, "") != null) {
-			PreferenceFieldRegistry.load(preferences, key + '.', currentValue);
+			PreferenceFieldRegistry.load(preferences, PreferenceKeys.of(key).getNestedPrefix(), currentValue);
 		}
 	}
 
@@ -52,16 +87,19 @@ public class PreferenceEntityHandler<E> implements FinalFieldHandler<E> {
 		if (preferences.getValue(key, "") == null) {
 			return null;
 		}
+		if (this.constructor == null) {
+			throw new IllegalArgumentException("Can't instantiate " + this.type);
+		}
 		try {
-			final E value = this.type.newInstance();
-			PreferenceFieldRegistry.load(preferences, key + '.', value);
-			for (final Method postConstruct : this.postConstructMethods) {
-				postConstruct.setAccessible(true);
-				postConstruct.invoke(value);
+			final E value = (E) this.constructor.invokeExact();
+			PreferenceFieldRegistry.load(preferences, PreferenceKeys.of(key).getNestedPrefix(), value);
+			for (final MethodHandle postConstruct : this.postConstructMethods) {
+				postConstruct.invokeExact((Object) value);
 			}
 			return value;
-		} catch (final InstantiationException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
+		} catch (final RuntimeException | Error e) {
+			throw e;
+		} catch (final Throwable e) {
 			throw new IllegalArgumentException("Can't instantiate " + this.type, e);
 		}
 	}
@@ -72,7 +110,7 @@ public class PreferenceEntityHandler<E> implements FinalFieldHandler<E> {
 			preferences.setValue(key, null);
 		} else {
 			preferences.reset(key);
-			PreferenceFieldRegistry.store(preferences, key + '.', value);
+			PreferenceFieldRegistry.store(preferences, PreferenceKeys.of(key).getNestedPrefix(), value);
 		}
 	}
 
@@ -28,7 +28,8 @@ public @interface PreferenceField {
 	/**
 	 * References the handler to use for loading and storing this field.
 	 *
-	 * The given class needs an empty public constructor.
+	 * The given class needs an empty public constructor or a public constructor that accepts the
+	 * {@link java.lang.reflect.Field}.
 	 *
 	 * @return the handler class, derived from the field class by default
 	 */
@@ -2,6 +2,7 @@ package org.portletbeans.preferences;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -9,20 +10,34 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.portlet.PortletPreferences;
 import javax.portlet.ReadOnlyException;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.portletbeans.util.ClassMetadataCache;
 import org.portletbeans.util.ClassUtil;
-import org.reflections.Reflections;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
 /**
  * Manages classes with {@link PreferenceField} annotations.
@@ -40,6 +55,26 @@ public final class PreferenceFieldRegistry {
 	@Getter
 	private static final class PreferenceFieldDescription<T> {
 
+		/**
+		 * The primitive types that are loaded and stored without boxing.
+		 */
+		private enum UnboxedType {
+			BOOLEAN, DOUBLE, INT, LONG;
+
+			static UnboxedType of(final Class<?> type, final PreferenceFieldHandler<?> handler) {
+				if (type == int.class && handler instanceof IntPreferenceFieldHandler) {
+					return INT;
+				} else if (type == long.class && handler instanceof LongPreferenceFieldHandler) {
+					return LONG;
+				} else if (type == double.class && handler instanceof DoublePreferenceFieldHandler) {
+					return DOUBLE;
+				} else if (type == boolean.class && handler instanceof BooleanPreferenceFieldHandler) {
+					return BOOLEAN;
+				}
+				return null;
+			}
+		}
+
 		private static final PreferenceField DEFAULT_PREFERENCE_FIELD = new PreferenceField() {
 
 			@Override
@@ -66,6 +101,8 @@ public final class PreferenceFieldRegistry {
 
 		private final Field field;
 
+		private final FieldAccessor accessor;
+
 		private final String key;
 
 		private final String defaultValue;
@@ -74,70 +111,223 @@ public final class PreferenceFieldRegistry {
 
 		private final boolean isFinal;
 
+		private final boolean isPrimitive;
+
+		/** The type of a primitive field with a handler that supports unboxed access, {@code null} otherwise. */
+		private final UnboxedType unboxedType;
+
+		/**
+		 * The default value, as parsed by a {@link DefaultValueFieldHandler} - {@code null} if the handler can't parse
+		 * it in advance or if the parsed value is mutable.
+		 */
+		private final T parsedDefaultValue;
+
 		PreferenceFieldDescription(final Field field) {
 			this.field = field;
 			field.setAccessible(true);
-			PreferenceField preferenceField = field.getAnnotation(PreferenceField.class);
-			if (preferenceField == null) {
-				preferenceField = DEFAULT_PREFERENCE_FIELD;
-			}
-
+			this.accessor = FieldAccessor.create(field, accessStrategy);
+			final PreferenceField preferenceField = getPreferenceField(field);
 			this.key = StringUtils.isBlank(preferenceField.value()) ? field.getName() : preferenceField.value();
 			this.defaultValue = StringUtils.isBlank(preferenceField.defaultValue()) ? null
 					: preferenceField.defaultValue();
-			this.handler = findHandler(field, (Class<? extends PreferenceFieldHandler<T>>) preferenceField.handler());
+			this.handler = findFieldHandler(field);
 			this.isFinal = Modifier.isFinal(field.getModifiers());
-			if (this.isFinal && !(this.handler instanceof FinalFieldHandler)) {
-				throw new IllegalArgumentException("Can't handle final field " + field);
+			this.isPrimitive = field.getType().isPrimitive();
+			this.unboxedType = this.isFinal ? null : UnboxedType.of(field.getType(), this.handler);
+			this.parsedDefaultValue = this.isFinal ? null : parseDefaultValue(this.handler, this.defaultValue);
+		}
+
+		void copy(final Object source, final Object target) {
+			final Object value = this.accessor.get(source);
+			if (!this.isFinal) {
+				this.accessor.set(target, copyValue(value, this.field.getType()));
+				return;
+			}
+			final Object targetValue = this.accessor.get(target);
+			if (value == null || targetValue == null || value == targetValue) {
+				// Nothing to fill
+				return;
+			}
+			if (targetValue instanceof Collection) {
+				final Collection<Object> targetValues = (Collection<Object>) targetValue;
+				targetValues.clear();
+				for (final Object element : (Collection<?>) value) {
+					targetValues.add(copyValue(element, Object.class));
+				}
+			} else if (targetValue instanceof Map) {
+				final Map<Object, Object> targetMap = (Map<Object, Object>) targetValue;
+				targetMap.clear();
+				for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+					targetMap.put(entry.getKey(), copyValue(entry.getValue(), Object.class));
+				}
+			} else {
+				PreferenceFieldRegistry.copy(value, targetValue);
+			}
+		}
+
+		void freeze(final Object instance) {
+			final Object value = this.accessor.get(instance);
+			final Object frozenValue = freezeValue(value);
+			if (frozenValue != value) {
+				if (!this.field.getType().isInstance(frozenValue)) {
+					throw new IllegalArgumentException(
+							"Can't freeze " + this.field + ", as it is not declared with an interface type");
+				}
+				try {
+					// Use the field itself, as the accessor can't write final fields
+					this.field.set(instance, frozenValue);
+				} catch (final IllegalAccessException e) {
+					throw new IllegalArgumentException("Can't freeze " + this.field, e);
+				}
 			}
 		}
 
 		void load(final PortletPreferences preferences, final String prefix, final Object instance) {
-			try {
-				final String preferenceKey = prefix == null ? this.key : prefix + this.key;
-				if (this.isFinal) {
-					final T value = (T) this.field.get(instance);
-					if (value != null) {
-						((FinalFieldHandler<T>) this.handler).load(value, preferences, preferenceKey,
-								this.defaultValue);
-					}
-				} else {
-					final T value = this.handler.load(preferences, preferenceKey, this.defaultValue);
-					// Dont' set null values for primitives (the default after initialization is usually enough)
-					if (value != null || !this.field.getType().isPrimitive()) {
-						this.field.set(instance, value);
-					}
+			final String preferenceKey = PreferenceKeys.concat(prefix, this.key);
+			if (this.unboxedType != null) {
+				loadUnboxed(preferences, preferenceKey, instance);
+			} else if (this.isFinal) {
+				final T value = (T) this.accessor.get(instance);
+				if (value != null) {
+					((FinalFieldHandler<T>) this.handler).load(value, preferences, preferenceKey, this.defaultValue);
+				}
+			} else {
+				final T value = this.parsedDefaultValue == null
+						? this.handler.load(preferences, preferenceKey, this.defaultValue)
+						: ((DefaultValueFieldHandler<T>) this.handler).loadOrDefault(preferences, preferenceKey,
+								this.parsedDefaultValue);
+				// Dont' set null values for primitives (the default after initialization is usually enough)
+				if (value != null || !this.isPrimitive) {
+					this.accessor.set(instance, value);
 				}
-			} catch (final IllegalAccessException e) {
-				throw new IllegalArgumentException(e);
+			}
+		}
+
+		private void loadUnboxed(final PortletPreferences preferences, final String preferenceKey,
+				final Object instance) {
+			// A parsed default value replaces the current value of the field, if nothing is stored
+			final Object parsedDefault = this.parsedDefaultValue;
+			final String unparsedDefault = parsedDefault == null ? this.defaultValue : null;
+			switch (this.unboxedType) {
+			case INT:
+				this.accessor.setInt(instance, ((IntPreferenceFieldHandler) this.handler).loadInt(preferences,
+						preferenceKey, unparsedDefault,
+						parsedDefault == null ? this.accessor.getInt(instance) : (Integer) parsedDefault));
+				break;
+			case LONG:
+				this.accessor.setLong(instance, ((LongPreferenceFieldHandler) this.handler).loadLong(preferences,
+						preferenceKey, unparsedDefault,
+						parsedDefault == null ? this.accessor.getLong(instance) : (Long) parsedDefault));
+				break;
+			case DOUBLE:
+				this.accessor.setDouble(instance, ((DoublePreferenceFieldHandler) this.handler).loadDouble(
+						preferences, preferenceKey, unparsedDefault,
+						parsedDefault == null ? this.accessor.getDouble(instance) : (Double) parsedDefault));
+				break;
+			default:
+				this.accessor.setBoolean(instance, ((BooleanPreferenceFieldHandler) this.handler).loadBoolean(
+						preferences, preferenceKey, unparsedDefault,
+						parsedDefault == null ? this.accessor.getBoolean(instance) : (Boolean) parsedDefault));
+				break;
 			}
 		}
 
 		void store(final PortletPreferences preferences, final String prefix, final Object instance) {
 			try {
-				final T value = (T) this.field.get(instance);
-				this.handler.store(preferences, prefix == null ? this.key : prefix + this.key, value);
-			} catch (final IllegalAccessException e) {
-				throw new IllegalArgumentException(e);
+				final String preferenceKey = PreferenceKeys.concat(prefix, this.key);
+				if (this.unboxedType != null) {
+					storeUnboxed(preferences, preferenceKey, instance);
+				} else {
+					final T value = (T) this.accessor.get(instance);
+					this.handler.store(preferences, preferenceKey, value);
+				}
 			} catch (final ReadOnlyException e) {
 				throw new IllegalArgumentException("Could not read store preference for field " + this.field, e);
 			}
 		}
+
+		private void storeUnboxed(final PortletPreferences preferences, final String preferenceKey,
+				final Object instance) throws ReadOnlyException {
+			switch (this.unboxedType) {
+			case INT:
+				((IntPreferenceFieldHandler) this.handler).storeInt(preferences, preferenceKey,
+						this.accessor.getInt(instance));
+				break;
+			case LONG:
+				((LongPreferenceFieldHandler) this.handler).storeLong(preferences, preferenceKey,
+						this.accessor.getLong(instance));
+				break;
+			case DOUBLE:
+				((DoublePreferenceFieldHandler) this.handler).storeDouble(preferences, preferenceKey,
+						this.accessor.getDouble(instance));
+				break;
+			default:
+				((BooleanPreferenceFieldHandler) this.handler).storeBoolean(preferences, preferenceKey,
+						this.accessor.getBoolean(instance));
+				break;
+			}
+		}
+	}
+
+	/**
+	 * An immutable entity that is shared for a portlet instance, together with the preference values it was loaded
+	 * from.
+	 */
+	@RequiredArgsConstructor
+	private static final class SharedEntity {
+
+		private final PreferencesSnapshot recordedValues;
+
+		private final Object entity;
+
 	}
 
-	private static final Map<Class<?>, List<PreferenceFieldDescription<?>>> PREFERENCE_FIELDS = Collections
-			.synchronizedMap(new HashMap<Class<?>, List<PreferenceFieldDescription<?>>>());
+	/** The maximum count of shared entities per class, see {@link #loadShared(PortletPreferences, String, Class)}. */
+	private static final int MAX_SHARED_ENTITIES = 1000;
 
-	private static final Map<Class<? extends PreferenceFieldHandler<?>>, PreferenceFieldHandler<?>> HANDLERS = Collections
-			.synchronizedMap(new HashMap<Class<? extends PreferenceFieldHandler<?>>, PreferenceFieldHandler<?>>());
+	/**
+	 * The shared entities for each class and instance key.
+	 *
+	 * The entities are attached to their class, so they don't keep the class loader of a redeployed portlet.
+	 */
+	private static final ClassMetadataCache<Cache<String, SharedEntity>> SHARED_ENTITIES = //
+			new ClassMetadataCache<Cache<String, SharedEntity>>() {
 
-	private static final Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> DEFAULT_HANDLERS = Collections
-			.unmodifiableMap(createDefaultHandlers());
+				@Override
+				protected Cache<String, SharedEntity> compute(final Class<?> type) {
+					return CacheBuilder.newBuilder().maximumSize(MAX_SHARED_ENTITIES).build();
+				}
+			};
+
+	private static volatile FieldAccessStrategy accessStrategy = FieldAccessStrategy.fromSystemProperty();
+
+	private static final ClassMetadataCache<PreferenceCodec<?>> CODECS = new ClassMetadataCache<PreferenceCodec<?>>() {
+
+		@Override
+		protected PreferenceCodec<?> compute(final Class<?> type) {
+			return createCodec(type);
+		}
+	};
+
+	private static final ClassMetadataCache<List<PreferenceFieldDescription<?>>> PREFERENCE_FIELDS = //
+			new ClassMetadataCache<List<PreferenceFieldDescription<?>>>() {
+
+				@Override
+				protected List<PreferenceFieldDescription<?>> compute(final Class<?> type) {
+					return createPreferenceFields(type);
+				}
+			};
+
+	private static final ConcurrentMap<Class<? extends PreferenceFieldHandler<?>>, PreferenceFieldHandler<?>> HANDLERS = //
+			new ConcurrentHashMap<>();
+
+	private static final Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> DEFAULT_HANDLERS = //
+			new ConcurrentHashMap<>(createDefaultHandlers());
 
 	private static Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> createDefaultHandlers() {
 		final Map<Class<?>, Class<? extends PreferenceFieldHandler<?>>> result = new HashMap<>();
-		final Set<Class<? extends PreferenceFieldHandler<?>>> handlerTypes = new Reflections("")
-				.getSubTypesOf((Class<PreferenceFieldHandler<?>>) (Class<?>) PreferenceFieldHandler.class);
+		final Set<Class<? extends PreferenceFieldHandler<?>>> handlerTypes = ClassUtil
+				.getIndexedClasses((Class<PreferenceFieldHandler<?>>) (Class<?>) PreferenceFieldHandler.class);
 		for (final Class<? extends PreferenceFieldHandler<?>> handlerType : handlerTypes) {
 			if (!Modifier.isAbstract(handlerType.getModifiers())) {
 				final Class<Object> type = ClassUtil.getActualTypeBinding(handlerType, PreferenceFieldHandler.class, 0);
@@ -149,6 +339,159 @@ public final class PreferenceFieldRegistry {
 		return result;
 	}
 
+	/**
+	 * The strategy used to read and write the fields of preference beans.
+	 *
+	 * @return the current strategy, initialized from the system property {@value FieldAccessStrategy#SYSTEM_PROPERTY}
+	 */
+	public static FieldAccessStrategy getAccessStrategy() {
+		return accessStrategy;
+	}
+
+	/**
+	 * Defines the strategy used to read and write the fields of preference beans.
+	 *
+	 * The strategy is applied to all classes that are inspected after this call, the accessors of already inspected
+	 * classes are kept. So this should be called before the first bean is loaded, if at all.
+	 *
+	 * @param strategy
+	 *            the new strategy
+	 */
+	public static void setAccessStrategy(final FieldAccessStrategy strategy) {
+		if (strategy == null) {
+			throw new IllegalArgumentException("Missing access strategy");
+		}
+		accessStrategy = strategy;
+	}
+
+	/**
+	 * Copies the values of all preference fields from one object to another object of the same class.
+	 *
+	 * Collections, maps, nested entities, dates and arrays are copied deeply, so both objects may be modified
+	 * independently. Lazy loaded collections and maps are loaded by the copy. The content of final fields is copied
+	 * into the existing values of the target. All other values - like strings, numbers and serialized values - are
+	 * shared between both objects.
+	 *
+	 * @param source
+	 *            the object to copy from
+	 * @param target
+	 *            the object to fill
+	 * @return the target (for chaining purposes)
+	 */
+	public static <T> T copy(final T source, final T target) {
+		if (source.getClass() != target.getClass()) {
+			throw new IllegalArgumentException("Can't copy a " + source.getClass() + " to a " + target.getClass());
+		}
+		for (final PreferenceFieldDescription<?> field : getPreferenceFields(source.getClass())) {
+			field.copy(source, target);
+		}
+		return target;
+	}
+
+	private static Object copyValue(final Object value, final Class<?> type) {
+		if (value instanceof Collection) {
+			final Collection<Object> copy;
+			if (value instanceof SortedSet) {
+				copy = new TreeSet<>(((SortedSet<Object>) value).comparator());
+			} else if (value instanceof Set) {
+				copy = new LinkedHashSet<>();
+			} else {
+				copy = new ArrayList<>();
+			}
+			// Keep the class of the value, if the field needs it
+			final Collection<Object> values = type.isInstance(copy) ? copy
+					: (Collection<Object>) newInstance(value.getClass());
+			for (final Object element : (Collection<?>) value) {
+				values.add(copyValue(element, Object.class));
+			}
+			return values;
+		} else if (value instanceof Map) {
+			final Map<Object, Object> copy;
+			if (value instanceof EnumMap) {
+				copy = new EnumMap<>((EnumMap) value);
+			} else if (value instanceof SortedMap) {
+				copy = new TreeMap<>(((SortedMap<Object, ?>) value).comparator());
+			} else {
+				copy = new LinkedHashMap<>();
+			}
+			final Map<Object, Object> map = type.isInstance(copy) ? copy
+					: (Map<Object, Object>) newInstance(value.getClass());
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(entry.getKey(), copyValue(entry.getValue(), Object.class));
+			}
+			return map;
+		} else if (value instanceof Date) {
+			return ((Date) value).clone();
+		} else if (value != null && value.getClass().isArray()) {
+			final int length = Array.getLength(value);
+			final Object array = Array.newInstance(value.getClass().getComponentType(), length);
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, copyValue(Array.get(value, i), Object.class));
+			}
+			return array;
+		} else if (value != null && value.getClass().isAnnotationPresent(PreferenceEntity.class)) {
+			return copy(value, newInstance(value.getClass()));
+		}
+		return value;
+	}
+
+	/**
+	 * Makes all collections and maps in the preference fields of an object unmodifiable, including the collections and
+	 * maps of all nested entities.
+	 *
+	 * Collections and maps are replaced by unmodifiable copies, so their fields have to be declared with an interface
+	 * type like {@link List} or {@link Map}. All other values have to be immutable (like strings, numbers and enums)
+	 * or nested entities.
+	 *
+	 * @param instance
+	 *            the object to freeze
+	 * @throws IllegalArgumentException
+	 *             if the object contains a value that can't be frozen, like a {@link Date} or an array
+	 */
+	private static void freeze(final Object instance) {
+		for (final PreferenceFieldDescription<?> field : getPreferenceFields(instance.getClass())) {
+			field.freeze(instance);
+		}
+	}
+
+	private static Object freezeValue(final Object value) {
+		if (value instanceof Collection) {
+			final Collection<?> values = (Collection<?>) value;
+			final Collection<Object> frozenValues;
+			if (value instanceof SortedSet) {
+				frozenValues = new TreeSet<>(((SortedSet<Object>) value).comparator());
+			} else if (value instanceof Set) {
+				frozenValues = new LinkedHashSet<>(values.size());
+			} else {
+				frozenValues = new ArrayList<>(values.size());
+			}
+			for (final Object element : values) {
+				frozenValues.add(freezeValue(element));
+			}
+			if (frozenValues instanceof SortedSet) {
+				return Collections.unmodifiableSortedSet((SortedSet<Object>) frozenValues);
+			} else if (frozenValues instanceof Set) {
+				return Collections.unmodifiableSet((Set<Object>) frozenValues);
+			}
+			return Collections.unmodifiableList((List<Object>) frozenValues);
+		} else if (value instanceof Map) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			final Map<Object, Object> frozenMap = value instanceof SortedMap
+					? new TreeMap<>(((SortedMap<Object, ?>) value).comparator())
+					: new LinkedHashMap<>(map.size());
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				frozenMap.put(freezeValue(entry.getKey()), freezeValue(entry.getValue()));
+			}
+			return frozenMap instanceof SortedMap ? Collections.unmodifiableSortedMap((SortedMap<Object, ?>) frozenMap)
+					: Collections.unmodifiableMap(frozenMap);
+		} else if (value != null && value.getClass().isAnnotationPresent(PreferenceEntity.class)) {
+			freeze(value);
+		} else if (value != null && !ClassUtil.isImmutable(value.getClass())) {
+			throw new IllegalArgumentException("Can't freeze a mutable value of " + value.getClass());
+		}
+		return value;
+	}
+
 	/**
 	 * Resolves the default field handler for the given field or type.
 	 *
@@ -162,21 +505,30 @@ public final class PreferenceFieldRegistry {
 	 */
 	static <T, E extends Enum<E>> PreferenceFieldHandler<T> findDefaultHandler(final Field field, final Class<T> type) {
 		// Inspect the field
-		final Class<? extends PreferenceFieldHandler<?>> defaultHandler = DEFAULT_HANDLERS.get(type);
+		Class<? extends PreferenceFieldHandler<?>> defaultHandler = DEFAULT_HANDLERS.get(type);
+		if (defaultHandler == null && type.isPrimitive()) {
+			defaultHandler = DEFAULT_HANDLERS.get(ClassUtils.primitiveToWrapper(type));
+		}
 		if (defaultHandler != null) {
 			return (PreferenceFieldHandler<T>) findExplicitHandler(field, defaultHandler);
 		} else if (type.isAnnotationPresent(PreferenceEntity.class)) {
 			return new PreferenceEntityHandler<>(type);
 		} else if (field != null && Collection.class.isAssignableFrom(type)) {
 			return (PreferenceFieldHandler<T>) new CollectionFieldHandler<>(field);
+		} else if (field != null && Map.class.isAssignableFrom(type) && MapFieldHandler.isSupported(field)) {
+			// Other maps, like Properties, are serialized
+			return (PreferenceFieldHandler<T>) new MapFieldHandler<>(field);
 		} else if (Enum.class.isAssignableFrom(type)) {
 			return (PreferenceFieldHandler<T>) new EnumFieldHandler<>((Class<E>) type);
 		} else if (char.class.isAssignableFrom(type)) {
 			return (PreferenceFieldHandler<T>) new CharacterFieldHandler();
 		} else {
 			try {
-				return new ToStringFieldHandler<>(
-						(Constructor<T>) ClassUtils.primitiveToWrapper(type).getConstructor(String.class));
+				if (Serializable.class.isAssignableFrom(type)) {
+					// Keep the serialization of values without string constructor, as they are already stored so
+					ClassUtils.primitiveToWrapper(type).getConstructor(String.class);
+				}
+				return new ToStringFieldHandler<>(type);
 			} catch (final NoSuchMethodException e) {
 				if (Serializable.class.isAssignableFrom(Serializable.class)) {
 					return (PreferenceFieldHandler<T>) findExplicitHandler(field, SerializableFieldHandler.class);
@@ -202,7 +554,10 @@ public final class PreferenceFieldRegistry {
 				}
 				if (handler == null) {
 					handler = handlerClass.newInstance();
-					HANDLERS.put(handlerClass, handler);
+					final PreferenceFieldHandler<?> sharedHandler = HANDLERS.putIfAbsent(handlerClass, handler);
+					if (sharedHandler != null) {
+						handler = sharedHandler;
+					}
 				}
 			} catch (final InvocationTargetException | InstantiationException | IllegalAccessException e) {
 				throw new IllegalArgumentException("Can't instantiate handler: " + handlerClass, e);
@@ -211,6 +566,147 @@ public final class PreferenceFieldRegistry {
 		return (PreferenceFieldHandler<T>) handler;
 	}
 
+	/**
+	 * Registers the default handler for all fields of the given type.
+	 *
+	 * The handler class is instantiated for every field, if it has a public constructor with a {@link Field}
+	 * parameter. Otherwise it is instantiated once with its default constructor.
+	 *
+	 * Handlers that are known at build time should be listed in the index file
+	 * {@value ClassUtil#INDEX_FOLDER}{@code org.portletbeans.preferences.PreferenceFieldHandler} instead. Registering
+	 * a handler has no effect on classes that were already inspected.
+	 *
+	 * @param type
+	 *            the type of the handled fields
+	 * @param handlerClass
+	 *            the class of the handler
+	 */
+	public static <T> void register(final Class<T> type,
+			final Class<? extends PreferenceFieldHandler<? super T>> handlerClass) {
+		if (type == null || handlerClass == null) {
+			throw new IllegalArgumentException("Missing type or handler class");
+		}
+		DEFAULT_HANDLERS.put(type, (Class<? extends PreferenceFieldHandler<?>>) handlerClass);
+	}
+
+	/**
+	 * Registers the default handler for all fields of the given type.
+	 *
+	 * The given handler is used for all fields of that type and for all fields that reference the class of the
+	 * handler explicitly in {@link PreferenceField#handler()}. Registering a handler has no effect on classes that
+	 * were already inspected.
+	 *
+	 * @param type
+	 *            the type of the handled fields
+	 * @param handler
+	 *            the handler
+	 */
+	public static <T> void register(final Class<T> type, final PreferenceFieldHandler<? super T> handler) {
+		if (type == null || handler == null) {
+			throw new IllegalArgumentException("Missing type or handler");
+		}
+		final Class<? extends PreferenceFieldHandler<?>> handlerClass = //
+				(Class<? extends PreferenceFieldHandler<?>>) handler.getClass();
+		HANDLERS.put(handlerClass, handler);
+		DEFAULT_HANDLERS.put(type, handlerClass);
+	}
+
+	/**
+	 * Creates the generated codec for the given class.
+	 *
+	 * @param c
+	 *            the class of the bean
+	 * @return the codec or {@code null} if no codec was generated for exactly that class
+	 */
+	private static PreferenceCodec<?> createCodec(final Class<?> c) {
+		final String codecName = c.getName().replace('$', '_') + PreferenceCodec.CODEC_SUFFIX;
+		try {
+			final Class<?> codecClass = Class.forName(codecName, true, c.getClassLoader());
+			if (PreferenceCodec.class.isAssignableFrom(codecClass)) {
+				return (PreferenceCodec<?>) codecClass.newInstance();
+			}
+		} catch (final ClassNotFoundException e) {
+			// No codec generated - use reflection
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't instantiate codec: " + codecName, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Inspects all declared preference fields for the given class.
+	 *
+	 * @param c
+	 *            the inspected class
+	 * @return the annotated fields of this class and all superclasses
+	 */
+	private static List<PreferenceFieldDescription<?>> createPreferenceFields(final Class<?> c) {
+		List<PreferenceFieldDescription<?>> fields = getPreferenceFields(c.getSuperclass());
+		final boolean isPreferenceEntity = c.isAnnotationPresent(PreferenceEntity.class);
+		boolean modified = false;
+		for (final Field field : c.getDeclaredFields()) {
+			if (isPreferenceField(field, isPreferenceEntity)) {
+				if (!modified) {
+					fields = new ArrayList<>(fields);
+					modified = true;
+				}
+
+				fields.add(new PreferenceFieldDescription<>(field));
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Resolves the generated codec for the given class.
+	 *
+	 * @param c
+	 *            the class of the bean
+	 * @return the codec or {@code null} if no codec was generated for exactly that class
+	 */
+	private static <T> PreferenceCodec<T> findCodec(final Class<?> c) {
+		return (PreferenceCodec<T>) CODECS.get(c);
+	}
+
+	/**
+	 * Resolves the handler for the given field, according to its {@link PreferenceField} annotation.
+	 *
+	 * @param field
+	 *            the preference field
+	 * @return the handler for the field
+	 * @throws IllegalArgumentException
+	 *             if we don't know how to handle the given field
+	 */
+	static <T> PreferenceFieldHandler<T> findFieldHandler(final Field field) {
+		final PreferenceFieldHandler<T> handler = findHandler(field,
+				(Class<? extends PreferenceFieldHandler<?>>) getPreferenceField(field).handler());
+		if (Modifier.isFinal(field.getModifiers()) && !(handler instanceof FinalFieldHandler)) {
+			throw new IllegalArgumentException("Can't handle final field " + field);
+		}
+		return handler;
+	}
+
+	/**
+	 * Reads the stored length of a collection or map.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param keys
+	 *            the keys of the collection or map
+	 * @return the stored length, 0 if none is stored
+	 */
+	static int getLength(final PortletPreferences preferences, final PreferenceKeys keys) {
+		final String length = preferences.getValue(keys.getLengthKey(), null);
+		if (length != null) {
+			try {
+				return Integer.parseInt(length);
+			} catch (final NumberFormatException e) {
+				// Ignore and return 0
+			}
+		}
+		return 0;
+	}
+
 	/**
 	 * Resolves the handler for the given class.
 	 *
@@ -233,6 +729,11 @@ public final class PreferenceFieldRegistry {
 		return findExplicitHandler(field, handlerClass);
 	}
 
+	private static PreferenceField getPreferenceField(final Field field) {
+		final PreferenceField preferenceField = field.getAnnotation(PreferenceField.class);
+		return preferenceField == null ? PreferenceFieldDescription.DEFAULT_PREFERENCE_FIELD : preferenceField;
+	}
+
 	/**
 	 * Resolves all declared preference fields for the given class.
 	 *
@@ -244,24 +745,51 @@ public final class PreferenceFieldRegistry {
 		if (c == Object.class) {
 			return Collections.emptyList();
 		}
-		List<PreferenceFieldDescription<?>> fields = PREFERENCE_FIELDS.get(c);
-		if (fields == null) {
-			fields = getPreferenceFields(c.getSuperclass());
-			final boolean isPreferenceEntity = c.isAnnotationPresent(PreferenceEntity.class);
-			boolean modified = false;
-			for (final Field field : c.getDeclaredFields()) {
-				if (isPreferenceField(field, isPreferenceEntity)) {
-					if (!modified) {
-						fields = new ArrayList<>(fields);
-						modified = true;
-					}
+		return PREFERENCE_FIELDS.get(c);
+	}
 
-					fields.add(new PreferenceFieldDescription<>(field));
-				}
+	/**
+	 * Parses the default value of a field in advance, if the value may be shared by all loads of the field.
+	 *
+	 * Mutable values are parsed again for every load, as every instance needs its own value.
+	 *
+	 * @param handler
+	 *            the handler of the field
+	 * @param defaultValue
+	 *            the default value given in the annotation, {@code null} if none
+	 * @return the parsed default value or {@code null} if the handler can't parse it or if the value is mutable
+	 */
+	static <T> T parseDefaultValue(final PreferenceFieldHandler<T> handler, final String defaultValue) {
+		if (defaultValue == null || !(handler instanceof DefaultValueFieldHandler)) {
+			return null;
+		}
+		final T value = ((DefaultValueFieldHandler<T>) handler).parseDefaultValue(defaultValue);
+		return value == null || !ClassUtil.isImmutable(value.getClass()) ? null : value;
+	}
+
+	/**
+	 * Resets the given keys and all keys of nested entities, collections and maps of these keys.
+	 *
+	 * Used to remove the preferences of elements that were removed from a collection or map. Iterates over all keys of
+	 * the preferences, so it should only be called if there is something to remove.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param keys
+	 *            the keys to reset
+	 * @throws ReadOnlyException
+	 *             if one of the keys is read only
+	 */
+	static void resetKeys(final PortletPreferences preferences, final Set<String> keys) throws ReadOnlyException {
+		for (final String name : Collections.list(preferences.getNames())) {
+			boolean derived = keys.contains(name);
+			for (int i = name.indexOf('.'); !derived && i > 0; i = name.indexOf('.', i + 1)) {
+				derived = keys.contains(name.substring(0, i));
+			}
+			if (derived) {
+				preferences.reset(name);
 			}
-			PREFERENCE_FIELDS.put(c, fields);
 		}
-		return fields;
 	}
 
 	private static boolean isPreferenceField(final Field field, final boolean isPreferenceEntity) {
@@ -287,8 +815,13 @@ public final class PreferenceFieldRegistry {
 	 * @return the loaded instance (for chaining purposes)
 	 */
 	public static <T> T load(final PortletPreferences preferences, final String prefix, final T instance) {
-		for (final PreferenceFieldDescription<?> field : getPreferenceFields(instance.getClass())) {
-			field.load(preferences, prefix, instance);
+		final PreferenceCodec<T> codec = findCodec(instance.getClass());
+		if (codec != null) {
+			codec.load(preferences, prefix, instance);
+		} else {
+			for (final PreferenceFieldDescription<?> field : getPreferenceFields(instance.getClass())) {
+				field.load(preferences, prefix, instance);
+			}
 		}
 		return instance;
 	}
@@ -306,6 +839,101 @@ public final class PreferenceFieldRegistry {
 		return load(preferences, null, instance);
 	}
 
+	/**
+	 * Loads initial values for an object, after all preferences were read at once.
+	 *
+	 * Reads all preferences with one call of {@link PortletPreferences#getMap()} into a {@link PreferencesView} and
+	 * loads all fields from that view. This is usually faster than reading each field from the portal, as soon as the
+	 * object has more than a few fields.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param prefix
+	 *            the prefix for all used keys - useful if a collection of elements was stored
+	 * @param instance
+	 *            the current instance to initialize
+	 * @return the loaded instance (for chaining purposes)
+	 */
+	public static <T> T loadBulk(final PortletPreferences preferences, final String prefix, final T instance) {
+		return load(preferences instanceof PreferencesView ? preferences : new PreferencesView(preferences), prefix,
+				instance);
+	}
+
+	/**
+	 * Loads initial values for an object, after all preferences were read at once.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param instance
+	 *            the current instance to initialize
+	 * @return the loaded instance (for chaining purposes)
+	 * @see #loadBulk(PortletPreferences, String, Object)
+	 */
+	public static <T> T loadBulk(final PortletPreferences preferences, final T instance) {
+		return loadBulk(preferences, null, instance);
+	}
+
+	private static <T> T newInstance(final Class<T> type) {
+		try {
+			return type.newInstance();
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't instantiate " + type, e);
+		}
+	}
+
+	/**
+	 * Loads a new entity, whose collections and maps are unmodifiable.
+	 *
+	 * Collections and maps of nested entities are unmodifiable as well. Entities with other mutable values, like a
+	 * {@link Date}, an array or a collection field with a concrete type, are rejected. The result is thread safe, as
+	 * long as no one calls a setter of the entity or of its nested entities.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param type
+	 *            the type of the entity, needs a default constructor
+	 * @return the loaded entity
+	 * @throws IllegalArgumentException
+	 *             if the entity contains a mutable value that can't be made unmodifiable
+	 */
+	public static <T> T loadImmutable(final PortletPreferences preferences, final Class<T> type) {
+		final T instance = newInstance(type);
+		load(preferences, instance);
+		freeze(instance);
+		return instance;
+	}
+
+	/**
+	 * Loads an entity that is shared between all requests for the same portlet instance.
+	 *
+	 * Returns the entity of a previous call with the same instance key, as long as all preference values read by that
+	 * call are unchanged. Otherwise a new entity is {@link #loadImmutable(PortletPreferences, Class) loaded} and
+	 * shared.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @param instanceKey
+	 *            identifies the portlet instance, for example the {@link javax.portlet.PortletRequest#getWindowID()
+	 *            window ID}
+	 * @param type
+	 *            the type of the entity, needs a default constructor
+	 * @return the shared entity, which must not be modified
+	 * @throws IllegalArgumentException
+	 *             if the entity contains a mutable value that can't be made unmodifiable
+	 */
+	public static <T> T loadShared(final PortletPreferences preferences, final String instanceKey,
+			final Class<T> type) {
+		final Cache<String, SharedEntity> sharedEntities = SHARED_ENTITIES.get(type);
+		final SharedEntity sharedEntity = sharedEntities.getIfPresent(instanceKey);
+		if (sharedEntity != null && sharedEntity.recordedValues.matches(preferences)) {
+			return type.cast(sharedEntity.entity);
+		}
+		final PreferencesSnapshot recordedValues = new PreferencesSnapshot();
+		final T entity = loadImmutable(recordedValues.track(new PreferencesView(preferences)), type);
+		sharedEntities.put(instanceKey, new SharedEntity(recordedValues, entity));
+		return entity;
+	}
+
 	/**
 	 * Stores all annotated fields of an object to the preferences.
 	 *
@@ -323,7 +951,9 @@ public final class PreferenceFieldRegistry {
 	/**
 	 * Stores all annotated fields of an object to the preferences.
 	 *
-	 * This method does not invoke {@link PortletPreferences#store()}, that should be done by the caller.
+	 * This method does not invoke {@link PortletPreferences#store()}, that should be done by the caller. All writes are
+	 * collected in a {@link PreferencesWriteBuffer} and applied at the end, unless the given preferences are a buffer
+	 * already.
 	 *
 	 * @param preferences
 	 *            the current portlet preferences
@@ -333,8 +963,24 @@ public final class PreferenceFieldRegistry {
 	 *            the current instance to store
 	 */
 	public static void store(final PortletPreferences preferences, final String prefix, final Object instance) {
-		for (final PreferenceFieldDescription<?> field : getPreferenceFields(instance.getClass())) {
-			field.store(preferences, prefix, instance);
+		if (!(preferences instanceof PreferencesWriteBuffer)) {
+			// Collect all writes and apply them at once
+			final PreferencesWriteBuffer buffer = new PreferencesWriteBuffer(preferences);
+			store(buffer, prefix, instance);
+			try {
+				buffer.flush();
+			} catch (final ReadOnlyException e) {
+				throw new IllegalArgumentException("Could not store preferences of " + instance.getClass(), e);
+			}
+			return;
+		}
+		final PreferenceCodec<Object> codec = findCodec(instance.getClass());
+		if (codec != null) {
+			codec.store(preferences, prefix, instance);
+		} else {
+			for (final PreferenceFieldDescription<?> field : getPreferenceFields(instance.getClass())) {
+				field.store(preferences, prefix, instance);
+			}
 		}
 	}
 
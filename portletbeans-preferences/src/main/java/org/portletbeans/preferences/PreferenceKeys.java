@@ -0,0 +1,217 @@
+package org.portletbeans.preferences;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The table of all preference keys that are derived from one key.
+ *
+ * Loading the same bean again and again would otherwise create the same keys for nested entities, collections and
+ * maps with every request. The tables are shared between all threads and filled on demand. To protect the memory,
+ * only a limited count of tables and prefixes is cached - the least recently used are evicted, for example the keys of
+ * redeployed classes.
+ *
+ * @author Tobias Liefke
+ */
+public final class PreferenceKeys {
+
+	/** The maximum index of collection elements and map entries, that is cached. */
+	private static final int MAX_CACHED_INDEX = 1024;
+
+	/** The maximum count of cached tables and of cached prefixes for concatenations. */
+	private static final int MAX_CACHED_KEYS = 1 << 12;
+
+	/** The maximum count of cached concatenations per prefix. */
+	private static final int MAX_CACHED_SUFFIXES = 256;
+
+	private static final char NO_SUFFIX = 0;
+
+	private static final char ENTRY_KEY_SUFFIX = 'k';
+
+	private static final char ENTRY_VALUE_SUFFIX = 'v';
+
+	private static final String[] NO_KEYS = new String[0];
+
+	private static final ConcurrentMap<String, PreferenceKeys> TABLES = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_KEYS).<String, PreferenceKeys> build().asMap();
+
+	private static final Cache<String, ConcurrentMap<String, String>> CONCATENATIONS = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_KEYS).build();
+
+	/**
+	 * Concatenates a prefix and a suffix to a preference key.
+	 *
+	 * @param prefix
+	 *            the prefix of the key, {@code null} if none is needed
+	 * @param suffix
+	 *            the suffix of the key
+	 * @return the concatenated key, usually the same instance for every call with the same arguments
+	 */
+	public static String concat(final String prefix, final String suffix) {
+		if (prefix == null) {
+			return suffix;
+		}
+		ConcurrentMap<String, String> keys = CONCATENATIONS.getIfPresent(prefix);
+		if (keys == null) {
+			keys = new ConcurrentHashMap<>();
+			final ConcurrentMap<String, String> existingKeys = CONCATENATIONS.asMap().putIfAbsent(prefix, keys);
+			if (existingKeys != null) {
+				keys = existingKeys;
+			}
+		}
+		String key = keys.get(suffix);
+		if (key == null) {
+			key = prefix + suffix;
+			if (keys.size() < MAX_CACHED_SUFFIXES) {
+				final String existingKey = keys.putIfAbsent(suffix, key);
+				if (existingKey != null) {
+					key = existingKey;
+				}
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Resolves the table of the keys derived from the given key.
+	 *
+	 * @param key
+	 *            the key of a preference field
+	 * @return the table for that key
+	 */
+	public static PreferenceKeys of(final String key) {
+		PreferenceKeys table = TABLES.get(key);
+		if (table == null) {
+			table = new PreferenceKeys(key);
+			final PreferenceKeys existingTable = TABLES.putIfAbsent(key, table);
+			if (existingTable != null) {
+				table = existingTable;
+			}
+		}
+		return table;
+	}
+
+	private final String key;
+
+	/** The prefix for the fields of a nested entity: {@code key.} */
+	private final String nestedPrefix;
+
+	/** The key of the length of a collection or map: {@code key.length} */
+	private final String lengthKey;
+
+	/** The keys of the elements of a collection: {@code key.index} */
+	private volatile String[] elementKeys = NO_KEYS;
+
+	/** The keys of the keys of map entries: {@code key.indexk} */
+	private volatile String[] entryKeyKeys = NO_KEYS;
+
+	/** The keys of the values of map entries: {@code key.indexv} */
+	private volatile String[] entryValueKeys = NO_KEYS;
+
+	private PreferenceKeys(final String key) {
+		this.key = key;
+		this.nestedPrefix = key + '.';
+		this.lengthKey = key + ".length";
+	}
+
+	private String createKey(final int index, final char suffix) {
+		final StringBuilder result = new StringBuilder(this.nestedPrefix).append(index);
+		if (suffix != NO_SUFFIX) {
+			result.append(suffix);
+		}
+		return result.toString();
+	}
+
+	private String[] extendKeys(final String[] keys, final int index, final char suffix) {
+		final String[] result = Arrays.copyOf(keys, Math.min(Math.max(index + 1, keys.length * 2), MAX_CACHED_INDEX));
+		for (int i = keys.length; i < result.length; i++) {
+			result[i] = createKey(i, suffix);
+		}
+		return result;
+	}
+
+	/**
+	 * The key of an element of a collection.
+	 *
+	 * @param index
+	 *            the index of the element
+	 * @return {@code key.index}
+	 */
+	public String getElementKey(final int index) {
+		String[] keys = this.elementKeys;
+		if (index >= keys.length) {
+			if (index >= MAX_CACHED_INDEX) {
+				return createKey(index, NO_SUFFIX);
+			}
+			keys = extendKeys(keys, index, NO_SUFFIX);
+			this.elementKeys = keys;
+		}
+		return keys[index];
+	}
+
+	/**
+	 * The key of the key of a map entry.
+	 *
+	 * @param index
+	 *            the index of the entry
+	 * @return {@code key.indexk}
+	 */
+	public String getEntryKeyKey(final int index) {
+		String[] keys = this.entryKeyKeys;
+		if (index >= keys.length) {
+			if (index >= MAX_CACHED_INDEX) {
+				return createKey(index, ENTRY_KEY_SUFFIX);
+			}
+			keys = extendKeys(keys, index, ENTRY_KEY_SUFFIX);
+			this.entryKeyKeys = keys;
+		}
+		return keys[index];
+	}
+
+	/**
+	 * The key of the value of a map entry.
+	 *
+	 * @param index
+	 *            the index of the entry
+	 * @return {@code key.indexv}
+	 */
+	public String getEntryValueKey(final int index) {
+		String[] keys = this.entryValueKeys;
+		if (index >= keys.length) {
+			if (index >= MAX_CACHED_INDEX) {
+				return createKey(index, ENTRY_VALUE_SUFFIX);
+			}
+			keys = extendKeys(keys, index, ENTRY_VALUE_SUFFIX);
+			this.entryValueKeys = keys;
+		}
+		return keys[index];
+	}
+
+	/**
+	 * The key of the length of a collection or map.
+	 *
+	 * @return {@code key.length}
+	 */
+	public String getLengthKey() {
+		return this.lengthKey;
+	}
+
+	/**
+	 * The prefix for all keys of a nested entity.
+	 *
+	 * @return {@code key.}
+	 */
+	public String getNestedPrefix() {
+		return this.nestedPrefix;
+	}
+
+	@Override
+	public String toString() {
+		return this.key;
+	}
+
+}
@@ -0,0 +1,170 @@
+package org.portletbeans.preferences;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+import javax.portlet.ValidatorException;
+
+/**
+ * Remembers the preference values that were read during a load, to write only the changed values during a store.
+ *
+ * Usage:
+ *
+ * <pre>
+ * final PreferencesSnapshot snapshot = new PreferencesSnapshot();
+ * PreferenceFieldRegistry.load(snapshot.track(preferences), bean);
+ * ...
+ * PreferenceFieldRegistry.store(snapshot.track(preferences), bean);
+ * preferences.store();
+ * </pre>
+ *
+ * All values that are written with the same serialized value as recorded in the snapshot are skipped, as well as
+ * resets of keys that had no value. If the preferences are changed by someone else in between, only the values that
+ * were changed in the bean will overwrite these changes.
+ *
+ * @author Tobias Liefke
+ */
+public class PreferencesSnapshot implements Serializable {
+
+	/**
+	 * Records all reads and filters all writes to the tracked preferences.
+	 */
+	private final class TrackingPreferences implements PortletPreferences {
+
+		private final PortletPreferences preferences;
+
+		TrackingPreferences(final PortletPreferences preferences) {
+			this.preferences = preferences;
+		}
+
+		private String[] getRecordedValues(final String key) {
+			if (PreferencesSnapshot.this.values.containsKey(key)) {
+				return PreferencesSnapshot.this.values.get(key);
+			}
+			final String[] currentValues = this.preferences.getValues(key, null);
+			PreferencesSnapshot.this.values.put(key, currentValues == null ? null : currentValues.clone());
+			return currentValues;
+		}
+
+		@Override
+		public Map<String, String[]> getMap() {
+			return this.preferences.getMap();
+		}
+
+		@Override
+		public Enumeration<String> getNames() {
+			return this.preferences.getNames();
+		}
+
+		@Override
+		public String getValue(final String key, final String defaultValue) {
+			final String[] currentValues = getRecordedValues(key);
+			if (currentValues == null || currentValues.length == 0) {
+				return defaultValue;
+			}
+			return currentValues[0];
+		}
+
+		@Override
+		public String[] getValues(final String key, final String[] defaultValues) {
+			final String[] currentValues = getRecordedValues(key);
+			return currentValues == null ? defaultValues : currentValues.clone();
+		}
+
+		@Override
+		public boolean isReadOnly(final String key) {
+			return this.preferences.isReadOnly(key);
+		}
+
+		@Override
+		public void reset(final String key) throws ReadOnlyException {
+			if (!PreferencesSnapshot.this.values.containsKey(key) || PreferencesSnapshot.this.values.get(key) != null) {
+				this.preferences.reset(key);
+				// The reset may have restored a default value
+				PreferencesSnapshot.this.values.remove(key);
+			}
+		}
+
+		@Override
+		public void setValue(final String key, final String value) throws ReadOnlyException {
+			final String[] newValues = { value };
+			if (!Arrays.equals(getRecordedValues(key), newValues)) {
+				this.preferences.setValue(key, value);
+				PreferencesSnapshot.this.values.put(key, newValues);
+			}
+		}
+
+		@Override
+		public void setValues(final String key, final String[] newValues) throws ReadOnlyException {
+			if (!Arrays.equals(getRecordedValues(key), newValues)) {
+				this.preferences.setValues(key, newValues);
+				PreferencesSnapshot.this.values.put(key, newValues == null ? null : newValues.clone());
+			}
+		}
+
+		@Override
+		public void store() throws IOException, ValidatorException {
+			this.preferences.store();
+		}
+
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	/** The recorded values, {@code null} for keys without a value. */
+	private final Map<String, String[]> values = new HashMap<>();
+
+	/**
+	 * Forgets all recorded values.
+	 */
+	public void clear() {
+		this.values.clear();
+	}
+
+	/**
+	 * Replaces all recorded values with the values recorded by another snapshot.
+	 *
+	 * @param other
+	 *            the snapshot to copy
+	 */
+	public void copyFrom(final PreferencesSnapshot other) {
+		this.values.clear();
+		// The recorded arrays are never modified, so we can share them
+		this.values.putAll(other.values);
+	}
+
+	/**
+	 * Indicates that all recorded values are still the current values of the given preferences.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @return {@code true} if no recorded value was changed since it was recorded
+	 */
+	public boolean matches(final PortletPreferences preferences) {
+		for (final Map.Entry<String, String[]> entry : this.values.entrySet()) {
+			if (!Arrays.equals(entry.getValue(), preferences.getValues(entry.getKey(), null))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Wraps the given preferences to record all read values and to skip all writes of unchanged values.
+	 *
+	 * @param preferences
+	 *            the current portlet preferences
+	 * @return the preferences to use for {@link PreferenceFieldRegistry#load(PortletPreferences, Object)} and
+	 *         {@link PreferenceFieldRegistry#store(PortletPreferences, Object)}
+	 */
+	public PortletPreferences track(final PortletPreferences preferences) {
+		return new TrackingPreferences(preferences);
+	}
+
+}
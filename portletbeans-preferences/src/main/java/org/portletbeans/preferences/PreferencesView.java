@@ -0,0 +1,101 @@
+package org.portletbeans.preferences;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+import javax.portlet.ValidatorException;
+
+/**
+ * An in-memory view of portlet preferences, which reads all values at once.
+ *
+ * The implementations of {@link PortletPreferences} in portals usually synchronize and copy the values with every
+ * call of {@link #getValue(String, String)}. This view reads all values with one call of {@link #getMap()} and
+ * answers all following reads from its own map. All writes are passed to the original preferences and applied to
+ * the view as well.
+ *
+ * Instances are not thread safe and should only be used for the current request.
+ *
+ * @author Tobias Liefke
+ */
+public class PreferencesView implements PortletPreferences {
+
+	private final PortletPreferences preferences;
+
+	private final Map<String, String[]> values;
+
+	/**
+	 * Creates a new view and reads all values of the given preferences.
+	 *
+	 * @param preferences
+	 *            the original preferences
+	 */
+	public PreferencesView(final PortletPreferences preferences) {
+		this.preferences = preferences;
+		this.values = new HashMap<>(preferences.getMap());
+	}
+
+	@Override
+	public Map<String, String[]> getMap() {
+		return Collections.unmodifiableMap(this.values);
+	}
+
+	@Override
+	public Enumeration<String> getNames() {
+		return Collections.enumeration(this.values.keySet());
+	}
+
+	@Override
+	public String getValue(final String key, final String defaultValue) {
+		final String[] currentValues = this.values.get(key);
+		if (currentValues == null || currentValues.length == 0) {
+			return defaultValue;
+		}
+		return currentValues[0];
+	}
+
+	@Override
+	public String[] getValues(final String key, final String[] defaultValues) {
+		final String[] currentValues = this.values.get(key);
+		return currentValues == null ? defaultValues : currentValues.clone();
+	}
+
+	@Override
+	public boolean isReadOnly(final String key) {
+		return this.preferences.isReadOnly(key);
+	}
+
+	@Override
+	public void reset(final String key) throws ReadOnlyException {
+		this.preferences.reset(key);
+		// The reset may have restored a default value
+		final String[] defaultValues = this.preferences.getValues(key, null);
+		if (defaultValues == null) {
+			this.values.remove(key);
+		} else {
+			this.values.put(key, defaultValues);
+		}
+	}
+
+	@Override
+	public void setValue(final String key, final String value) throws ReadOnlyException {
+		this.preferences.setValue(key, value);
+		this.values.put(key, new String[] { value });
+	}
+
+	@Override
+	public void setValues(final String key, final String[] newValues) throws ReadOnlyException {
+		this.preferences.setValues(key, newValues);
+		this.values.put(key, newValues == null ? new String[] { null } : newValues.clone());
+	}
+
+	@Override
+	public void store() throws IOException, ValidatorException {
+		this.preferences.store();
+	}
+
+}
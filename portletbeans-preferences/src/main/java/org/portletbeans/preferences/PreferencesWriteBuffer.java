@@ -0,0 +1,182 @@
+package org.portletbeans.preferences;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+import javax.portlet.ValidatorException;
+
+/**
+ * Collects all writes to portlet preferences and applies them at once.
+ *
+ * Every key is written at most once during a {@link #flush()}: a later {@link #setValue(String, String)} replaces an
+ * earlier one as well as an earlier {@link #reset(String)} and a later reset replaces all earlier writes. All reads
+ * see the pending writes.
+ *
+ * {@link PreferenceFieldRegistry#store(PortletPreferences, String, Object)} uses a buffer automatically. Instances are
+ * not thread safe and should only be used for the current request.
+ *
+ * @author Tobias Liefke
+ */
+public class PreferencesWriteBuffer implements PortletPreferences {
+
+	/** Marks a pending reset. */
+	private static final String[] RESET = new String[0];
+
+	private final PortletPreferences preferences;
+
+	/** The pending writes in the order of their first occurence. */
+	private final Map<String, String[]> pendingWrites = new LinkedHashMap<>();
+
+	/**
+	 * Creates a new buffer for the given preferences.
+	 *
+	 * @param preferences
+	 *            the preferences that receive the writes during {@link #flush()}
+	 */
+	public PreferencesWriteBuffer(final PortletPreferences preferences) {
+		this.preferences = preferences;
+	}
+
+	/**
+	 * Applies all pending writes to the original preferences.
+	 *
+	 * Keys with more than one value are written with {@link PortletPreferences#setValues(String, String[])}, all other
+	 * keys with {@link PortletPreferences#setValue(String, String)}.
+	 *
+	 * The writes are applied completely or not at all: all keys are checked with
+	 * {@link PortletPreferences#isReadOnly(String)} before the first write and if a write fails nevertheless, the keys
+	 * written before are restored.
+	 *
+	 * @throws ReadOnlyException
+	 *             if one of the written keys is read only - the preferences are unchanged and all writes are kept
+	 */
+	public void flush() throws ReadOnlyException {
+		for (final String key : this.pendingWrites.keySet()) {
+			if (this.preferences.isReadOnly(key)) {
+				throw new ReadOnlyException("Preference is read only: " + key);
+			}
+		}
+		final Map<String, String[]> previousValues = new LinkedHashMap<>();
+		try {
+			for (final Map.Entry<String, String[]> write : this.pendingWrites.entrySet()) {
+				final String key = write.getKey();
+				previousValues.put(key, this.preferences.getValues(key, null));
+				write(key, write.getValue());
+			}
+		} catch (final ReadOnlyException | RuntimeException e) {
+			restore(previousValues);
+			throw e;
+		}
+		this.pendingWrites.clear();
+	}
+
+	private void restore(final Map<String, String[]> previousValues) throws ReadOnlyException {
+		for (final Map.Entry<String, String[]> previousValue : previousValues.entrySet()) {
+			write(previousValue.getKey(), previousValue.getValue() == null ? RESET : previousValue.getValue());
+		}
+	}
+
+	private void write(final String key, final String[] values) throws ReadOnlyException {
+		if (values == RESET) {
+			this.preferences.reset(key);
+		} else if (values.length == 1) {
+			this.preferences.setValue(key, values[0]);
+		} else {
+			this.preferences.setValues(key, values);
+		}
+	}
+
+	@Override
+	public Map<String, String[]> getMap() {
+		if (this.pendingWrites.isEmpty()) {
+			return this.preferences.getMap();
+		}
+		final Map<String, String[]> result = new LinkedHashMap<>(this.preferences.getMap());
+		for (final Map.Entry<String, String[]> write : this.pendingWrites.entrySet()) {
+			if (write.getValue() == RESET) {
+				result.remove(write.getKey());
+			} else {
+				result.put(write.getKey(), write.getValue().clone());
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	@Override
+	public Enumeration<String> getNames() {
+		if (this.pendingWrites.isEmpty()) {
+			return this.preferences.getNames();
+		}
+		final Set<String> names = new LinkedHashSet<>(Collections.list(this.preferences.getNames()));
+		for (final Map.Entry<String, String[]> write : this.pendingWrites.entrySet()) {
+			if (write.getValue() == RESET) {
+				names.remove(write.getKey());
+			} else {
+				names.add(write.getKey());
+			}
+		}
+		return Collections.enumeration(names);
+	}
+
+	@Override
+	public String getValue(final String key, final String defaultValue) {
+		final String[] values = this.pendingWrites.get(key);
+		if (values == null) {
+			return this.preferences.getValue(key, defaultValue);
+		}
+		return values.length == 0 ? defaultValue : values[0];
+	}
+
+	@Override
+	public String[] getValues(final String key, final String[] defaultValues) {
+		final String[] values = this.pendingWrites.get(key);
+		if (values == null) {
+			return this.preferences.getValues(key, defaultValues);
+		}
+		return values == RESET ? defaultValues : values.clone();
+	}
+
+	@Override
+	public boolean isReadOnly(final String key) {
+		return this.preferences.isReadOnly(key);
+	}
+
+	@Override
+	public void reset(final String key) throws ReadOnlyException {
+		this.pendingWrites.put(key, RESET);
+	}
+
+	@Override
+	public void setValue(final String key, final String value) throws ReadOnlyException {
+		this.pendingWrites.put(key, new String[] { value });
+	}
+
+	@Override
+	public void setValues(final String key, final String[] values) throws ReadOnlyException {
+		this.pendingWrites.put(key, values == null ? new String[] { null } : values.clone());
+	}
+
+	/**
+	 * Applies all pending writes and stores the original preferences.
+	 *
+	 * @throws ValidatorException
+	 *             if the validation of the preferences failed or one of the written keys is read only
+	 */
+	@Override
+	public void store() throws IOException, ValidatorException {
+		try {
+			flush();
+		} catch (final ReadOnlyException e) {
+			throw new ValidatorException(e, this.pendingWrites.keySet());
+		}
+		this.preferences.store();
+	}
+
+}
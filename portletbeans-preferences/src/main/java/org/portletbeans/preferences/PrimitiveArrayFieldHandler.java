@@ -0,0 +1,96 @@
+package org.portletbeans.preferences;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Base class for the handlers of primitive arrays.
+ *
+ * All elements of an array are stored as the values of one multi-valued preference and are parsed directly into the
+ * primitive array, without any wrapper objects. The default value of such a field contains the elements separated by
+ * commas.
+ *
+ * Arrays that were stored as serialized objects by the {@link SerializableFieldHandler} are still read.
+ *
+ * @author Tobias Liefke
+ * @param <A>
+ *            the type of the array
+ */
+@RequiredArgsConstructor
+@Slf4j
+public abstract class PrimitiveArrayFieldHandler<A> implements PreferenceFieldHandler<A> {
+
+	/** The Base64 encoded start of the header of serialized objects. */
+	private static final String SERIALIZED_PREFIX = "rO0";
+
+	private static final SerializableFieldHandler SERIALIZED_HANDLER = new SerializableFieldHandler();
+
+	private static final String DEFAULT_VALUE_SEPARATORS = ", ";
+
+	private final Class<A> arrayClass;
+
+	/**
+	 * Converts an array to the values in the preferences.
+	 *
+	 * @param value
+	 *            the array
+	 * @return the string representations of all elements
+	 */
+	protected abstract String[] format(final A value);
+
+	@Override
+	public A load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final String[] values = preferences.getValues(key, null);
+		if (values == null) {
+			return StringUtils.isEmpty(defaultValue) ? null
+					: parse(key, StringUtils.split(defaultValue, DEFAULT_VALUE_SEPARATORS));
+		}
+		if (values.length == 1) {
+			if (values[0] == null) {
+				return null;
+			}
+			if (values[0].startsWith(SERIALIZED_PREFIX)) {
+				final Object serialized = SERIALIZED_HANDLER.load(preferences, key, null);
+				return this.arrayClass.isInstance(serialized) ? this.arrayClass.cast(serialized) : null;
+			}
+		}
+		return parse(key, values);
+	}
+
+	/**
+	 * Converts the values from the preferences to an array.
+	 *
+	 * @param values
+	 *            the string representations of all elements
+	 * @return the array
+	 * @throws NumberFormatException
+	 *             if one of the values is invalid
+	 */
+	protected abstract A parse(final String[] values);
+
+	private A parse(final String key, final String[] values) {
+		try {
+			return parse(values);
+		} catch (final NumberFormatException e) {
+			log.error("Could not convert the preference value for " + key + " to a "
+					+ this.arrayClass.getComponentType() + " array: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final A value)
+			throws ReadOnlyException {
+		if (value == null) {
+			preferences.setValue(key, null);
+		} else {
+			preferences.setValues(key, format(value));
+		}
+	}
+
+}
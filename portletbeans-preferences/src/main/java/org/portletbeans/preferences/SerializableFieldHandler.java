@@ -1,39 +1,134 @@
 package org.portletbeans.preferences;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import javax.portlet.PortletPreferences;
 import javax.portlet.ReadOnlyException;
 import javax.xml.bind.DatatypeConverter;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.lang3.StringUtils;
+import org.portletbeans.preferences.serializer.DecodedValueCache;
+import org.portletbeans.preferences.serializer.JavaPreferenceSerializer;
+import org.portletbeans.preferences.serializer.PreferenceSerializer;
+import org.portletbeans.util.ClassUtil;
 
 /**
- * Handles conversion of simple string fields into preference values.
+ * Handles conversion of serializable fields into preference values.
+ *
+ * The values are written with the {@link PreferenceSerializer} given to the constructor - the
+ * {@link JavaPreferenceSerializer} by default - and stored Base64 encoded. Stored values are read with the first
+ * serializer that accepts them, so values written by any serializer of the index file
+ * {@value ClassUtil#INDEX_FOLDER}{@code org.portletbeans.preferences.serializer.PreferenceSerializer} are still read
+ * after switching the serializer. To write all serializable fields with another serializer, register the handler:
+ *
+ * <pre>
+ * PreferenceFieldRegistry.register(Serializable.class,
+ * 		new SerializableFieldHandler(new CompactPreferenceSerializer()));
+ * </pre>
+ *
+ * Portlets that load the same large values again and again should use a {@link DecodedValueCache}.
  *
  * @author Tobias Liefke
  */
-@RequiredArgsConstructor
 @Slf4j
 public final class SerializableFieldHandler implements PreferenceFieldHandler<Serializable> {
 
+	/** All known serializers, used to read stored values. */
+	private static final List<PreferenceSerializer> SERIALIZERS = createSerializers();
+
+	private static List<PreferenceSerializer> createSerializers() {
+		final List<PreferenceSerializer> result = new ArrayList<>();
+		for (final Class<? extends PreferenceSerializer> serializerClass : ClassUtil
+				.getIndexedClasses(PreferenceSerializer.class)) {
+			try {
+				result.add(serializerClass.newInstance());
+			} catch (final InstantiationException | IllegalAccessException e) {
+				throw new IllegalArgumentException("Can't instantiate serializer: " + serializerClass, e);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	private final PreferenceSerializer serializer;
+
+	/** The optional cache for decoded values. */
+	private final DecodedValueCache cache;
+
+	/**
+	 * Creates a handler that writes with the Java object serialization.
+	 */
+	public SerializableFieldHandler() {
+		this(new JavaPreferenceSerializer());
+	}
+
+	/**
+	 * Creates a handler that writes with the given serializer.
+	 *
+	 * @param serializer
+	 *            the serializer used to write values
+	 */
+	public SerializableFieldHandler(final PreferenceSerializer serializer) {
+		this(serializer, null);
+	}
+
+	/**
+	 * Creates a handler that writes with the given serializer and caches the decoded values.
+	 *
+	 * @param serializer
+	 *            the serializer used to write values
+	 * @param cache
+	 *            the cache for the decoded values, {@code null} if no cache is used
+	 */
+	public SerializableFieldHandler(final PreferenceSerializer serializer, final DecodedValueCache cache) {
+		if (serializer == null) {
+			throw new IllegalArgumentException("Missing serializer");
+		}
+		this.serializer = serializer;
+		this.cache = cache;
+	}
+
+	private PreferenceSerializer findSerializer(final byte[] data) {
+		if (this.serializer.accepts(data)) {
+			return this.serializer;
+		}
+		for (final PreferenceSerializer knownSerializer : SERIALIZERS) {
+			if (knownSerializer.accepts(data)) {
+				return knownSerializer;
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public Serializable load(final PortletPreferences preferences, final String key, final String defaultValue) {
 		final String value = preferences.getValue(key, defaultValue);
 		if (StringUtils.isEmpty(value)) {
 			return null;
 		}
+		if (this.cache != null) {
+			final Serializable cachedValue = this.cache.get(value);
+			if (cachedValue != null) {
+				return cachedValue;
+			}
+		}
 		try {
-			return (Serializable) new ObjectInputStream(new ByteArrayInputStream(
-					DatatypeConverter.parseBase64Binary(value))).readObject();
+			final byte[] data = DatatypeConverter.parseBase64Binary(value);
+			final PreferenceSerializer dataSerializer = findSerializer(data);
+			if (dataSerializer == null) {
+				log.error("Could not find serializer for object from preferences: " + value);
+				return null;
+			}
+			final Serializable result = dataSerializer.deserialize(data);
+			if (this.cache != null && result != null) {
+				return this.cache.put(value, result, dataSerializer, data);
+			}
+			return result;
 		} catch (final IOException | ClassNotFoundException e) {
 			log.error("Could not deserialize object from preferences: " + value, e);
 			return null;
@@ -47,13 +142,11 @@ public final class SerializableFieldHandler implements PreferenceFieldHandler<Se
 			preferences.setValue(key, null);
 		} else {
 			try {
-				final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-				new ObjectOutputStream(buffer).writeObject(value);
-				preferences.setValue(key, DatatypeConverter.printBase64Binary(buffer.toByteArray()));
+				preferences.setValue(key, DatatypeConverter.printBase64Binary(this.serializer.serialize(value)));
 			} catch (final IOException e) {
 				log.error("Could not serialize object for preferences: " + value, e);
 			}
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -8,13 +8,23 @@ import javax.portlet.ReadOnlyException;
  *
  * @author Tobias Liefke
  */
-public final class StringFieldHandler implements PreferenceFieldHandler<String> {
+public final class StringFieldHandler implements ValueFieldHandler<String> {
+
+	@Override
+	public String format(final String value) {
+		return value;
+	}
 
 	@Override
 	public String load(final PortletPreferences preferences, final String key, final String defaultValue) {
 		return preferences.getValue(key, defaultValue);
 	}
 
+	@Override
+	public String parse(final String value) {
+		return value;
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final String value)
 			throws ReadOnlyException {
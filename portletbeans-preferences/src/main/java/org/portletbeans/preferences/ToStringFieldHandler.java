@@ -1,46 +1,103 @@
 package org.portletbeans.preferences;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import javax.portlet.PortletPreferences;
 import javax.portlet.ReadOnlyException;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.portletbeans.util.StringConverter;
+
 /**
- * Handles the conversion of fields that have a string constructor into preference values.
+ * Handles the conversion of fields that have a string constructor or a static {@code valueOf(String)} or
+ * {@code parse(String)} method into preference values.
  *
  * @author Tobias Liefke
  * @param <T>
  *            The type of the field
  */
-@RequiredArgsConstructor
 @Slf4j
-public final class ToStringFieldHandler<T> implements PreferenceFieldHandler<T> {
+public final class ToStringFieldHandler<T> implements ValueFieldHandler<T>, DefaultValueFieldHandler<T> {
+
+	private final StringConverter<T> converter;
+
+	/**
+	 * Creates a new instance of this handler.
+	 *
+	 * @param type
+	 *            the class of the associated field
+	 * @throws NoSuchMethodException
+	 *             if the type can't be created from a string
+	 */
+	public ToStringFieldHandler(final Class<T> type) throws NoSuchMethodException {
+		this.converter = StringConverter.of(type);
+	}
 
-	private final Constructor<T> constructor;
+	/**
+	 * Creates a new instance of this handler.
+	 *
+	 * @param constructor
+	 *            the public string constructor of the associated type
+	 */
+	public ToStringFieldHandler(final Constructor<T> constructor) {
+		try {
+			this.converter = StringConverter.of(constructor);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Can't access " + constructor, e);
+		}
+	}
+
+	private T convert(final String key, final String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return this.converter.convert(value);
+		} catch (final RuntimeException e) {
+			log.error("Could not convert the preference value for " + key + " to a " + this.converter.getType() + ": "
+					+ value, e);
+			return null;
+		}
+	}
+
+	@Override
+	public String format(final T value) {
+		return value == null ? null : value.toString();
+	}
 
 	@Override
 	public T load(final PortletPreferences preferences, final String key, final String defaultValue) {
-		final String value = preferences.getValue(key, defaultValue);
+		return convert(key, preferences.getValue(key, defaultValue));
+	}
+
+	@Override
+	public T loadOrDefault(final PortletPreferences preferences, final String key, final T defaultValue) {
+		final String value = preferences.getValue(key, null);
+		return value == null ? defaultValue : convert(key, value);
+	}
+
+	@Override
+	public T parse(final String value) {
 		if (value == null) {
 			return null;
 		}
 		try {
-			return this.constructor.newInstance(value);
-		} catch (final InstantiationException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			log.error("Could not convert the preference value for " + key + " to a "
-					+ this.constructor.getDeclaringClass() + ": " + value, e);
+			return this.converter.convert(value);
+		} catch (final RuntimeException e) {
+			log.error("Could not convert the preference value to a " + this.converter.getType() + ": " + value, e);
 			return null;
 		}
 	}
 
+	@Override
+	public T parseDefaultValue(final String defaultValue) {
+		return parse(defaultValue);
+	}
+
 	@Override
 	public void store(final PortletPreferences preferences, final String key, final T value) throws ReadOnlyException {
-		preferences.setValue(key, value == null ? null : value.toString());
+		preferences.setValue(key, format(value));
 	}
 
-}
\ No newline at end of file
+}
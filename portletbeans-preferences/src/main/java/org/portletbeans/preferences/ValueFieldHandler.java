@@ -0,0 +1,33 @@
+package org.portletbeans.preferences;
+
+/**
+ * Handles fields with simple values, that are stored as one string.
+ *
+ * Collections and maps can store all elements of such a type in one multi-valued preference, see
+ * {@link MultiValueCollectionFieldHandler}.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the handled field
+ */
+public interface ValueFieldHandler<T> extends PreferenceFieldHandler<T> {
+
+	/**
+	 * Converts a value to its string representation in the preferences.
+	 *
+	 * @param value
+	 *            the value, may be {@code null}
+	 * @return the string representation or {@code null} if the value was {@code null}
+	 */
+	String format(final T value);
+
+	/**
+	 * Converts the string representation of a value from the preferences.
+	 *
+	 * @param value
+	 *            the string representation, may be {@code null}
+	 * @return the value or {@code null} if the string is {@code null} or can't be converted
+	 */
+	T parse(final String value);
+
+}
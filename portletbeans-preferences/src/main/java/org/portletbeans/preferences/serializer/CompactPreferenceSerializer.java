@@ -0,0 +1,930 @@
+package org.portletbeans.preferences.serializer;
+
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.portletbeans.util.ClassMetadataCache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A compact binary serializer.
+ *
+ * Strings, numbers, dates, enums, arrays and the common collections and maps of {@code java.util} are written with a
+ * type tag and a dense payload. Classes annotated with {@link CompactSerializable} are written field by field: the
+ * names and types of the fields of a class are written only once per value and are matched by name when reading, so
+ * added or removed fields don't break stored values. The fields of a class are inspected only once and shared
+ * references and cycles are kept.
+ *
+ * Objects that are written field by field are created with their default constructor, so - unlike the Java object
+ * serialization - the constructor runs and transient fields keep the value assigned by their initializers. That's why
+ * classes have to opt in. All other classes, and annotated classes that customize their serialization
+ * ({@code writeObject}, {@code writeReplace}, {@link Externalizable} ...) or have no default constructor, are embedded
+ * with the Java object serialization.
+ *
+ * When reading, only the collection and map classes that this serializer writes are instantiated and all stored
+ * lengths are checked against the remaining data, so corrupt data can't create arbitrary objects or huge arrays.
+ *
+ * Every call of {@link #serialize(Serializable)} uses its own output buffer, so the serializer holds no state between
+ * calls and may be shared by all threads.
+ *
+ * @author Tobias Liefke
+ */
+public final class CompactPreferenceSerializer implements PreferenceSerializer {
+
+	/**
+	 * The metadata of a class that is written field by field.
+	 */
+	private static final class ClassDescriptor {
+
+		private static final Set<String> CUSTOM_SERIALIZATION_METHODS = ImmutableSet.of("writeObject", "readObject",
+				"readObjectNoData", "writeReplace", "readResolve");
+
+		private static boolean isCompact(final Class<?> type) {
+			if (!type.isAnnotationPresent(CompactSerializable.class) || !Serializable.class.isAssignableFrom(type)
+					|| Externalizable.class.isAssignableFrom(type) || type.isArray() || type.isEnum()
+					|| Proxy.isProxyClass(type)) {
+				return false;
+			}
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				for (final Method method : current.getDeclaredMethods()) {
+					if (!Modifier.isStatic(method.getModifiers())
+							&& CUSTOM_SERIALIZATION_METHODS.contains(method.getName())) {
+						return false;
+					}
+				}
+				try {
+					current.getDeclaredField("serialPersistentFields");
+					return false;
+				} catch (final NoSuchFieldException e) {
+					// Default serialized fields
+				}
+			}
+			return true;
+		}
+
+		/** The default constructor - {@code null} if the class is not written field by field. */
+		private final Constructor<?> constructor;
+
+		private final Field[] fields;
+
+		/** The transient fields, only used for copies. */
+		private final Field[] transientFields;
+
+		private final String[] names;
+
+		private final int[] types;
+
+		private final Map<String, Field> fieldsByName = new HashMap<>();
+
+		ClassDescriptor(final Class<?> type) {
+			Constructor<?> defaultConstructor = null;
+			if (isCompact(type)) {
+				try {
+					defaultConstructor = type.getDeclaredConstructor();
+					defaultConstructor.setAccessible(true);
+				} catch (final NoSuchMethodException | SecurityException e) {
+					// Fall back to the Java serialization
+				}
+			}
+			this.constructor = defaultConstructor;
+			if (this.constructor == null) {
+				this.fields = new Field[0];
+				this.transientFields = new Field[0];
+				this.names = new String[0];
+				this.types = new int[0];
+				return;
+			}
+
+			// Collect the fields from the topmost serializable class downwards
+			final List<Class<?>> hierarchy = new ArrayList<>();
+			for (Class<?> current = type; current != null
+					&& Serializable.class.isAssignableFrom(current); current = current.getSuperclass()) {
+				hierarchy.add(current);
+			}
+			Collections.reverse(hierarchy);
+			final List<Field> serializedFields = new ArrayList<>();
+			final List<Field> otherFields = new ArrayList<>();
+			for (final Class<?> current : hierarchy) {
+				for (final Field field : current.getDeclaredFields()) {
+					if (!Modifier.isStatic(field.getModifiers())) {
+						field.setAccessible(true);
+						(Modifier.isTransient(field.getModifiers()) ? otherFields : serializedFields).add(field);
+					}
+				}
+			}
+			this.fields = serializedFields.toArray(new Field[serializedFields.size()]);
+			this.transientFields = otherFields.toArray(new Field[otherFields.size()]);
+			this.names = new String[this.fields.length];
+			this.types = new int[this.fields.length];
+			for (int i = 0; i < this.fields.length; i++) {
+				final Field field = this.fields[i];
+				String name = field.getName();
+				if (this.fieldsByName.containsKey(name)) {
+					// Hidden field of a superclass
+					name = field.getDeclaringClass().getName() + '.' + name;
+				}
+				this.fieldsByName.put(name, field);
+				this.names[i] = name;
+				final Integer primitiveTag = field.getType().isPrimitive()
+						? VALUE_TAGS.get(ClassUtils.primitiveToWrapper(field.getType()))
+						: null;
+				this.types[i] = primitiveTag == null ? OBJECT : primitiveTag;
+			}
+		}
+
+		boolean isCompact() {
+			return this.constructor != null;
+		}
+
+	}
+
+	/**
+	 * The descriptor of a class, as read from the stored data.
+	 */
+	private static final class StoredClass {
+
+		private final ClassDescriptor descriptor;
+
+		/** The matching local field for every stored field, {@code null} if the field does not exist anymore. */
+		private final Field[] fields;
+
+		private final int[] types;
+
+		StoredClass(final ClassDescriptor descriptor, final Field[] fields, final int[] types) {
+			this.descriptor = descriptor;
+			this.fields = fields;
+			this.types = types;
+		}
+
+	}
+
+	/**
+	 * The buffer and the state of one write operation.
+	 */
+	private static final class Output {
+
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		private int length;
+
+		private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+		private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+		private final Map<Class<?>, Integer> descriptors = new HashMap<>();
+
+		private void ensureCapacity(final int count) {
+			if (this.length + count > this.buffer.length) {
+				final byte[] newBuffer = new byte[Math.max(this.buffer.length * 2, this.length + count)];
+				System.arraycopy(this.buffer, 0, newBuffer, 0, this.length);
+				this.buffer = newBuffer;
+			}
+		}
+
+		byte[] toByteArray() {
+			final byte[] result = new byte[this.length];
+			System.arraycopy(this.buffer, 0, result, 0, this.length);
+			return result;
+		}
+
+		void writeByte(final int value) {
+			ensureCapacity(1);
+			this.buffer[this.length++] = (byte) value;
+		}
+
+		void writeBytes(final byte[] bytes) {
+			writeVarInt(bytes.length);
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+			this.length += bytes.length;
+		}
+
+		void writeFixedInt(final int value) {
+			for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+				writeByte(value >>> shift);
+			}
+		}
+
+		void writeFixedLong(final long value) {
+			for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+				writeByte((int) (value >>> shift));
+			}
+		}
+
+		void writeSignedInt(final int value) {
+			writeVarInt(value << 1 ^ value >> Integer.SIZE - 1);
+		}
+
+		void writeSignedLong(final long value) {
+			writeVarLong(value << 1 ^ value >> Long.SIZE - 1);
+		}
+
+		void writeString(final String value) {
+			writeBytes(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		void writeVarInt(final int value) {
+			int remaining = value;
+			while ((remaining & ~VARINT_PAYLOAD) != 0) {
+				writeByte(remaining & VARINT_PAYLOAD | VARINT_CONTINUATION);
+				remaining >>>= VARINT_PAYLOAD_BITS;
+			}
+			writeByte(remaining);
+		}
+
+		void writeVarLong(final long value) {
+			long remaining = value;
+			while ((remaining & ~VARINT_PAYLOAD) != 0) {
+				writeByte((int) (remaining & VARINT_PAYLOAD) | VARINT_CONTINUATION);
+				remaining >>>= VARINT_PAYLOAD_BITS;
+			}
+			writeByte((int) remaining);
+		}
+
+	}
+
+	/**
+	 * The data and the state of one read operation.
+	 */
+	private static final class Input {
+
+		private final byte[] data;
+
+		private int position;
+
+		private final List<Object> references = new ArrayList<>();
+
+		private final List<Class<?>> classes = new ArrayList<>();
+
+		private final List<StoredClass> descriptors = new ArrayList<>();
+
+		Input(final byte[] data, final int position) {
+			this.data = data;
+			this.position = position;
+		}
+
+		/**
+		 * Reads the length of an array, collection, map or class descriptor.
+		 *
+		 * @param minimumElementSize
+		 *            the minimum count of bytes that every element uses in the data
+		 * @return the length, which is never greater than the remaining data allows
+		 * @throws IOException
+		 *             if the length is invalid
+		 */
+		int readLength(final int minimumElementSize) throws IOException {
+			final int length = readVarInt();
+			if (length < 0 || length > (this.data.length - this.position) / minimumElementSize) {
+				throw new StreamCorruptedException("Invalid length: " + length);
+			}
+			return length;
+		}
+
+		int readByte() throws EOFException {
+			if (this.position >= this.data.length) {
+				throw new EOFException();
+			}
+			return this.data[this.position++] & BYTE_MASK;
+		}
+
+		byte[] readBytes() throws IOException {
+			final int count = readVarInt();
+			if (count < 0 || this.position + count > this.data.length) {
+				throw new EOFException();
+			}
+			final byte[] result = new byte[count];
+			System.arraycopy(this.data, this.position, result, 0, count);
+			this.position += count;
+			return result;
+		}
+
+		int readFixedInt() throws EOFException {
+			int result = 0;
+			for (int i = 0; i < Integer.SIZE / Byte.SIZE; i++) {
+				result = result << Byte.SIZE | readByte();
+			}
+			return result;
+		}
+
+		long readFixedLong() throws EOFException {
+			long result = 0;
+			for (int i = 0; i < Long.SIZE / Byte.SIZE; i++) {
+				result = result << Byte.SIZE | readByte();
+			}
+			return result;
+		}
+
+		int readSignedInt() throws EOFException {
+			final int value = readVarInt();
+			return value >>> 1 ^ -(value & 1);
+		}
+
+		long readSignedLong() throws EOFException {
+			final long value = readVarLong();
+			return value >>> 1 ^ -(value & 1);
+		}
+
+		String readString() throws IOException {
+			final int count = readVarInt();
+			if (count < 0 || this.position + count > this.data.length) {
+				throw new EOFException();
+			}
+			final String result = new String(this.data, this.position, count, StandardCharsets.UTF_8);
+			this.position += count;
+			return result;
+		}
+
+		int readVarInt() throws EOFException {
+			int result = 0;
+			for (int shift = 0;; shift += VARINT_PAYLOAD_BITS) {
+				final int value = readByte();
+				result |= (value & VARINT_PAYLOAD) << shift;
+				if ((value & VARINT_CONTINUATION) == 0) {
+					return result;
+				}
+			}
+		}
+
+		long readVarLong() throws EOFException {
+			long result = 0;
+			for (int shift = 0;; shift += VARINT_PAYLOAD_BITS) {
+				final int value = readByte();
+				result |= (long) (value & VARINT_PAYLOAD) << shift;
+				if ((value & VARINT_CONTINUATION) == 0) {
+					return result;
+				}
+			}
+		}
+
+	}
+
+	/** The first bytes of all data written by this serializer: "PB" and the version of the format. */
+	private static final byte[] HEADER = { 'P', 'B', 1 };
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	private static final int BYTE_MASK = 0xFF;
+
+	private static final int VARINT_PAYLOAD = 0x7F;
+
+	private static final int VARINT_CONTINUATION = 0x80;
+
+	private static final int VARINT_PAYLOAD_BITS = 7;
+
+	// The type tags
+
+	private static final int NULL = 0;
+
+	private static final int REFERENCE = 1;
+
+	private static final int STRING = 2;
+
+	private static final int INTEGER = 3;
+
+	private static final int LONG = 4;
+
+	private static final int DOUBLE = 5;
+
+	private static final int FLOAT = 6;
+
+	private static final int BOOLEAN = 7;
+
+	private static final int SHORT = 8;
+
+	private static final int BYTE = 9;
+
+	private static final int CHARACTER = 10;
+
+	private static final int DATE = 11;
+
+	private static final int BIG_DECIMAL = 12;
+
+	private static final int BIG_INTEGER = 13;
+
+	private static final int ENUM = 14;
+
+	private static final int ARRAY = 15;
+
+	private static final int COLLECTION = 16;
+
+	private static final int MAP = 17;
+
+	private static final int OBJECT = 18;
+
+	private static final int JAVA = 19;
+
+	/** The tags of all classes that are written without references. */
+	private static final Map<Class<?>, Integer> VALUE_TAGS = ImmutableMap.<Class<?>, Integer> builder().//
+			put(String.class, STRING).//
+			put(Integer.class, INTEGER).//
+			put(Long.class, LONG).//
+			put(Double.class, DOUBLE).//
+			put(Float.class, FLOAT).//
+			put(Boolean.class, BOOLEAN).//
+			put(Short.class, SHORT).//
+			put(Byte.class, BYTE).//
+			put(Character.class, CHARACTER).//
+			put(Date.class, DATE).//
+			put(BigDecimal.class, BIG_DECIMAL).//
+			put(BigInteger.class, BIG_INTEGER).//
+			build();
+
+	private static final Set<Class<?>> COLLECTION_CLASSES = ImmutableSet.<Class<?>> of(ArrayList.class,
+			LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class);
+
+	private static final Set<Class<?>> MAP_CLASSES = ImmutableSet.<Class<?>> of(HashMap.class, LinkedHashMap.class,
+			TreeMap.class);
+
+	private static final ClassMetadataCache<ClassDescriptor> DESCRIPTORS = new ClassMetadataCache<ClassDescriptor>() {
+
+		@Override
+		protected ClassDescriptor compute(final Class<?> type) {
+			return new ClassDescriptor(type);
+		}
+	};
+
+	private static final JavaPreferenceSerializer JAVA_SERIALIZER = new JavaPreferenceSerializer();
+
+	/**
+	 * Copies a decoded value without serializing it.
+	 *
+	 * The copy is in the same state as the decoded value, independent of the serializer that decoded it: collections,
+	 * maps, arrays and dates are copied, strings, numbers and enums are shared and objects that are written field by
+	 * field are created with their default constructor and get copies of all fields - including the transient ones.
+	 * Shared references and cycles are kept.
+	 *
+	 * @param value
+	 *            the decoded value
+	 * @return the copy
+	 * @throws NotSerializableException
+	 *             if the value contains an object that is neither a value, a collection, a map nor written field by
+	 *             field
+	 */
+	static Object copy(final Object value) throws NotSerializableException {
+		return copyValue(value, new IdentityHashMap<Object, Object>());
+	}
+
+	private static Object copyValue(final Object value, final Map<Object, Object> copies)
+			throws NotSerializableException {
+		if (value == null || value instanceof Enum) {
+			return value;
+		}
+		final Class<?> type = value.getClass();
+		if (VALUE_TAGS.containsKey(type)) {
+			return value instanceof Date ? new Date(((Date) value).getTime()) : value;
+		}
+		Object copy = copies.get(value);
+		if (copy != null) {
+			return copy;
+		}
+		if (type.isArray()) {
+			final int length = Array.getLength(value);
+			copy = Array.newInstance(type.getComponentType(), length);
+			copies.put(value, copy);
+			for (int i = 0; i < length; i++) {
+				Array.set(copy, i, copyValue(Array.get(value, i), copies));
+			}
+		} else if (COLLECTION_CLASSES.contains(type)
+				&& !(value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null)) {
+			final Collection<Object> collection = (Collection<Object>) instantiate(type);
+			copies.put(value, collection);
+			for (final Object element : (Collection<?>) value) {
+				collection.add(copyValue(element, copies));
+			}
+			copy = collection;
+		} else if (MAP_CLASSES.contains(type)
+				&& !(value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null)) {
+			final Map<Object, Object> map = (Map<Object, Object>) instantiate(type);
+			copies.put(value, map);
+			for (final Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				map.put(copyValue(entry.getKey(), copies), copyValue(entry.getValue(), copies));
+			}
+			copy = map;
+		} else {
+			final ClassDescriptor descriptor = DESCRIPTORS.get(type);
+			if (!descriptor.isCompact()) {
+				throw new NotSerializableException(type.getName());
+			}
+			try {
+				copy = descriptor.constructor.newInstance();
+				copies.put(value, copy);
+				for (final Field field : descriptor.fields) {
+					field.set(copy, copyValue(field.get(value), copies));
+				}
+				for (final Field field : descriptor.transientFields) {
+					field.set(copy, copyValue(field.get(value), copies));
+				}
+			} catch (final InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new NotSerializableException(type.getName());
+			}
+		}
+		return copy;
+	}
+
+	private static Object instantiate(final Class<?> type) throws NotSerializableException {
+		try {
+			return type.newInstance();
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new NotSerializableException(type.getName());
+		}
+	}
+
+	private static Object instantiate(final Class<?> type, final Set<Class<?>> allowedClasses)
+			throws InvalidClassException {
+		if (!allowedClasses.contains(type)) {
+			throw new InvalidClassException(type.getName(), "Not a supported collection or map class");
+		}
+		try {
+			return type.newInstance();
+		} catch (final InstantiationException | IllegalAccessException e) {
+			throw new InvalidClassException(type.getName(), e.toString());
+		}
+	}
+
+	private static Class<?> loadClass(final String name) throws ClassNotFoundException {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		if (contextClassLoader != null) {
+			try {
+				return ClassUtils.getClass(contextClassLoader, name, false);
+			} catch (final ClassNotFoundException e) {
+				// Try our own class loader
+			}
+		}
+		return ClassUtils.getClass(CompactPreferenceSerializer.class.getClassLoader(), name, false);
+	}
+
+	private static Object readArray(final Input input) throws IOException, ClassNotFoundException {
+		final Class<?> componentType = readClass(input);
+		final int length = input.readLength(1);
+		final Object array = Array.newInstance(componentType, length);
+		input.references.add(array);
+		final Integer tag = componentType.isPrimitive() ? VALUE_TAGS.get(ClassUtils.primitiveToWrapper(componentType))
+				: null;
+		for (int i = 0; i < length; i++) {
+			Array.set(array, i, tag == null ? readValue(input) : readPayload(input, tag));
+		}
+		return array;
+	}
+
+	private static Class<?> readClass(final Input input) throws IOException, ClassNotFoundException {
+		final int reference = input.readVarInt();
+		if (reference > 0) {
+			return input.classes.get(reference - 1);
+		}
+		final Class<?> type = loadClass(input.readString());
+		input.classes.add(type);
+		return type;
+	}
+
+	private static Object readObject(final Input input) throws IOException, ClassNotFoundException {
+		final StoredClass storedClass = readStoredClass(input);
+		final Object object;
+		try {
+			object = storedClass.descriptor.constructor.newInstance();
+		} catch (final InstantiationException | IllegalAccessException | InvocationTargetException e) {
+			throw new InvalidClassException(storedClass.descriptor.constructor.getDeclaringClass().getName(),
+					e.toString());
+		}
+		input.references.add(object);
+		for (int i = 0; i < storedClass.fields.length; i++) {
+			final int type = storedClass.types[i];
+			final Object value = type == OBJECT ? readValue(input) : readPayload(input, type);
+			final Field field = storedClass.fields[i];
+			if (field != null) {
+				try {
+					field.set(object, value);
+				} catch (final IllegalArgumentException | IllegalAccessException e) {
+					// The type of the field has changed - keep the default value
+				}
+			}
+		}
+		return object;
+	}
+
+	private static Object readPayload(final Input input, final int tag) throws IOException {
+		switch (tag) {
+		case STRING:
+			return input.readString();
+		case INTEGER:
+			return input.readSignedInt();
+		case LONG:
+			return input.readSignedLong();
+		case DOUBLE:
+			return Double.longBitsToDouble(input.readFixedLong());
+		case FLOAT:
+			return Float.intBitsToFloat(input.readFixedInt());
+		case BOOLEAN:
+			return input.readByte() != 0;
+		case SHORT:
+			return (short) input.readSignedInt();
+		case BYTE:
+			return (byte) input.readByte();
+		case CHARACTER:
+			return (char) input.readVarInt();
+		case DATE:
+			return new Date(input.readSignedLong());
+		case BIG_DECIMAL:
+			return new BigDecimal(input.readString());
+		case BIG_INTEGER:
+			return new BigInteger(input.readBytes());
+		default:
+			throw new StreamCorruptedException("Unknown type tag: " + tag);
+		}
+	}
+
+	private static StoredClass readStoredClass(final Input input) throws IOException, ClassNotFoundException {
+		final int reference = input.readVarInt();
+		if (reference > 0) {
+			return input.descriptors.get(reference - 1);
+		}
+		final Class<?> type = loadClass(input.readString());
+		final ClassDescriptor descriptor = DESCRIPTORS.get(type);
+		if (!descriptor.isCompact()) {
+			throw new InvalidClassException(type.getName(), "Can't read the fields of the class");
+		}
+		// Every field has at least a name length and a type tag
+		final int count = input.readLength(2);
+		final Field[] fields = new Field[count];
+		final int[] types = new int[count];
+		for (int i = 0; i < count; i++) {
+			fields[i] = descriptor.fieldsByName.get(input.readString());
+			types[i] = input.readByte();
+		}
+		final StoredClass storedClass = new StoredClass(descriptor, fields, types);
+		input.descriptors.add(storedClass);
+		return storedClass;
+	}
+
+	private static Object readValue(final Input input) throws IOException, ClassNotFoundException {
+		final int tag = input.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case REFERENCE:
+			return input.references.get(input.readVarInt());
+		case ENUM:
+			final Class<?> enumClass = readClass(input);
+			if (!enumClass.isEnum()) {
+				throw new InvalidClassException(enumClass.getName(), "Not an enum");
+			}
+			return Enum.valueOf((Class) enumClass, input.readString());
+		case ARRAY:
+			return readArray(input);
+		case COLLECTION:
+			final Collection<Object> collection = (Collection<Object>) instantiate(readClass(input),
+					COLLECTION_CLASSES);
+			input.references.add(collection);
+			for (int i = input.readLength(1); i > 0; i--) {
+				collection.add(readValue(input));
+			}
+			return collection;
+		case MAP:
+			final Map<Object, Object> map = (Map<Object, Object>) instantiate(readClass(input), MAP_CLASSES);
+			input.references.add(map);
+			for (int i = input.readLength(2); i > 0; i--) {
+				map.put(readValue(input), readValue(input));
+			}
+			return map;
+		case OBJECT:
+			return readObject(input);
+		case JAVA:
+			final Object object = JAVA_SERIALIZER.deserialize(input.readBytes());
+			input.references.add(object);
+			return object;
+		default:
+			return readPayload(input, tag);
+		}
+	}
+
+	private static void writeArray(final Output output, final Object array) throws IOException {
+		final Class<?> componentType = array.getClass().getComponentType();
+		output.writeByte(ARRAY);
+		writeClass(output, componentType);
+		final int length = Array.getLength(array);
+		output.writeVarInt(length);
+		final Integer tag = componentType.isPrimitive() ? VALUE_TAGS.get(ClassUtils.primitiveToWrapper(componentType))
+				: null;
+		for (int i = 0; i < length; i++) {
+			if (tag == null) {
+				writeValue(output, Array.get(array, i));
+			} else {
+				writePayload(output, tag, Array.get(array, i));
+			}
+		}
+	}
+
+	private static void writeClass(final Output output, final Class<?> type) {
+		final Integer reference = output.classes.get(type);
+		if (reference != null) {
+			output.writeVarInt(reference + 1);
+		} else {
+			output.writeVarInt(0);
+			output.writeString(type.getName());
+			output.classes.put(type, output.classes.size());
+		}
+	}
+
+	private static void writeObject(final Output output, final Object object, final ClassDescriptor descriptor)
+			throws IOException {
+		output.writeByte(OBJECT);
+		final Class<?> type = object.getClass();
+		final Integer reference = output.descriptors.get(type);
+		if (reference != null) {
+			output.writeVarInt(reference + 1);
+		} else {
+			output.writeVarInt(0);
+			output.writeString(type.getName());
+			output.writeVarInt(descriptor.fields.length);
+			for (int i = 0; i < descriptor.fields.length; i++) {
+				output.writeString(descriptor.names[i]);
+				output.writeByte(descriptor.types[i]);
+			}
+			output.descriptors.put(type, output.descriptors.size());
+		}
+		for (int i = 0; i < descriptor.fields.length; i++) {
+			final Object value;
+			try {
+				value = descriptor.fields[i].get(object);
+			} catch (final IllegalAccessException e) {
+				throw new InvalidClassException(type.getName(), e.toString());
+			}
+			if (descriptor.types[i] == OBJECT) {
+				writeValue(output, value);
+			} else {
+				writePayload(output, descriptor.types[i], value);
+			}
+		}
+	}
+
+	private static void writePayload(final Output output, final int tag, final Object value) {
+		switch (tag) {
+		case STRING:
+			output.writeString((String) value);
+			break;
+		case INTEGER:
+			output.writeSignedInt((Integer) value);
+			break;
+		case LONG:
+			output.writeSignedLong((Long) value);
+			break;
+		case DOUBLE:
+			output.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+			break;
+		case FLOAT:
+			output.writeFixedInt(Float.floatToRawIntBits((Float) value));
+			break;
+		case BOOLEAN:
+			output.writeByte((Boolean) value ? 1 : 0);
+			break;
+		case SHORT:
+			output.writeSignedInt((Short) value);
+			break;
+		case BYTE:
+			output.writeByte((Byte) value);
+			break;
+		case CHARACTER:
+			output.writeVarInt((Character) value);
+			break;
+		case DATE:
+			output.writeSignedLong(((Date) value).getTime());
+			break;
+		case BIG_DECIMAL:
+			output.writeString(value.toString());
+			break;
+		case BIG_INTEGER:
+			output.writeBytes(((BigInteger) value).toByteArray());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown type tag: " + tag);
+		}
+	}
+
+	private static void writeValue(final Output output, final Object value) throws IOException {
+		if (value == null) {
+			output.writeByte(NULL);
+			return;
+		}
+		final Class<?> type = value.getClass();
+		final Integer tag = VALUE_TAGS.get(type);
+		if (tag != null) {
+			output.writeByte(tag);
+			writePayload(output, tag, value);
+			return;
+		}
+		if (value instanceof Enum) {
+			output.writeByte(ENUM);
+			writeClass(output, ((Enum<?>) value).getDeclaringClass());
+			output.writeString(((Enum<?>) value).name());
+			return;
+		}
+
+		final Integer reference = output.references.get(value);
+		if (reference != null) {
+			output.writeByte(REFERENCE);
+			output.writeVarInt(reference);
+			return;
+		}
+		output.references.put(value, output.references.size());
+		if (type.isArray()) {
+			writeArray(output, value);
+		} else if (COLLECTION_CLASSES.contains(type)
+				&& !(value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null)) {
+			final Collection<?> collection = (Collection<?>) value;
+			output.writeByte(COLLECTION);
+			writeClass(output, type);
+			output.writeVarInt(collection.size());
+			for (final Object element : collection) {
+				writeValue(output, element);
+			}
+		} else if (MAP_CLASSES.contains(type)
+				&& !(value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null)) {
+			final Map<?, ?> map = (Map<?, ?>) value;
+			output.writeByte(MAP);
+			writeClass(output, type);
+			output.writeVarInt(map.size());
+			for (final Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(output, entry.getKey());
+				writeValue(output, entry.getValue());
+			}
+		} else {
+			final ClassDescriptor descriptor = DESCRIPTORS.get(type);
+			if (descriptor.isCompact()) {
+				writeObject(output, value, descriptor);
+			} else if (value instanceof Serializable) {
+				output.writeByte(JAVA);
+				output.writeBytes(JAVA_SERIALIZER.serialize((Serializable) value));
+			} else {
+				throw new NotSerializableException(type.getName());
+			}
+		}
+	}
+
+	@Override
+	public boolean accepts(final byte[] data) {
+		if (data.length < HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < HEADER.length; i++) {
+			if (data[i] != HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public Serializable deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+		try {
+			return (Serializable) readValue(new Input(data, HEADER.length));
+		} catch (final IndexOutOfBoundsException | ClassCastException | NegativeArraySizeException
+				| IllegalArgumentException e) {
+			throw new StreamCorruptedException(e.toString());
+		}
+	}
+
+	@Override
+	public byte[] serialize(final Serializable value) throws IOException {
+		final Output output = new Output();
+		for (final byte headerByte : HEADER) {
+			output.writeByte(headerByte);
+		}
+		writeValue(output, value);
+		return output.toByteArray();
+	}
+
+}
@@ -0,0 +1,25 @@
+package org.portletbeans.preferences.serializer;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a serializable class, which the {@link CompactPreferenceSerializer} may write field by field.
+ *
+ * In contrast to the Java object serialization, an annotated class is created with its default constructor when it
+ * is read. So the constructor runs and transient fields keep the values of their initializers. The class must not
+ * customize its serialization. Only the annotated class itself is written field by field, not its subclasses.
+ *
+ * @author Tobias Liefke
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CompactSerializable {
+
+	// This annotation has no parameters
+
+}
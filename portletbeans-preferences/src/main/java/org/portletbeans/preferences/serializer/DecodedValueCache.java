@@ -0,0 +1,143 @@
+package org.portletbeans.preferences.serializer;
+
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.Serializable;
+
+import lombok.extern.slf4j.Slf4j;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import org.portletbeans.util.ClassUtil;
+
+/**
+ * A bounded cache for the values decoded by the {@link org.portletbeans.preferences.SerializableFieldHandler}.
+ *
+ * Maps the stored (encoded) string to the decoded value, so the same stored value is not decoded again on every load.
+ * The weight of an entry is the length of the stored string, but at least {@code maximumWeight / maximumEntries}. So
+ * the cache holds never more than the given count of entries and never more than the given weight.
+ *
+ * Immutable values (strings, numbers and enums) are shared between all loads. All other values are kept as decoded
+ * and every caller gets its own copy, which is in the same state as the value of the first load: collections, maps,
+ * arrays, dates and objects of classes annotated with {@link CompactSerializable} are copied without serializing them.
+ * Only values that contain objects of other classes are decoded again from the data with the serializer that decoded
+ * them.
+ *
+ * @author Tobias Liefke
+ */
+@Slf4j
+public final class DecodedValueCache {
+
+	/**
+	 * The cached value - either shared, copied or as data for a copy.
+	 */
+	private static final class Entry {
+
+		private final Serializable value;
+
+		/** Indicates that the value is mutable and needs to be copied. */
+		private final boolean copy;
+
+		private final PreferenceSerializer serializer;
+
+		private final byte[] data;
+
+		Entry(final Serializable value, final boolean copy, final PreferenceSerializer serializer, final byte[] data) {
+			this.value = value;
+			this.copy = copy;
+			this.serializer = serializer;
+			this.data = data;
+		}
+
+	}
+
+	private final Cache<String, Entry> entries;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maximumEntries
+	 *            the maximum count of cached values
+	 * @param maximumWeight
+	 *            the maximum sum of the lengths of all cached strings
+	 */
+	public DecodedValueCache(final int maximumEntries, final long maximumWeight) {
+		if (maximumEntries <= 0 || maximumWeight < maximumEntries) {
+			throw new IllegalArgumentException("Invalid cache size: " + maximumEntries + " / " + maximumWeight);
+		}
+		final int minimumWeight = (int) Math.min(Integer.MAX_VALUE, maximumWeight / maximumEntries);
+		this.entries = CacheBuilder.newBuilder().maximumWeight(maximumWeight).weigher(new Weigher<String, Entry>() {
+
+			@Override
+			public int weigh(final String key, final Entry value) {
+				return Math.max(key.length(), minimumWeight);
+			}
+		}).build();
+	}
+
+	/**
+	 * Resolves a cached value.
+	 *
+	 * @param storedValue
+	 *            the string from the preferences
+	 * @return the decoded value - a copy, if the value is mutable - or {@code null} if the value is not cached
+	 */
+	public Serializable get(final String storedValue) {
+		final Entry entry = this.entries.getIfPresent(storedValue);
+		if (entry == null) {
+			return null;
+		}
+		try {
+			if (entry.data != null) {
+				return entry.serializer.deserialize(entry.data);
+			}
+			return entry.copy ? (Serializable) CompactPreferenceSerializer.copy(entry.value) : entry.value;
+		} catch (final IOException | ClassNotFoundException e) {
+			log.warn("Could not copy cached value: " + e);
+			this.entries.invalidate(storedValue);
+			return null;
+		}
+	}
+
+	/**
+	 * Caches a decoded value.
+	 *
+	 * @param storedValue
+	 *            the string from the preferences
+	 * @param value
+	 *            the decoded value
+	 * @param serializer
+	 *            the serializer that decoded the value
+	 * @param data
+	 *            the decoded data, only kept to create copies of values that can't be copied otherwise
+	 * @return the value for the caller - a copy, if the value is mutable, as the cache keeps the decoded value
+	 */
+	public Serializable put(final String storedValue, final Serializable value, final PreferenceSerializer serializer,
+			final byte[] data) {
+		if (ClassUtil.isImmutable(value.getClass())) {
+			this.entries.put(storedValue, new Entry(value, false, null, null));
+			return value;
+		}
+		try {
+			final Serializable copy = (Serializable) CompactPreferenceSerializer.copy(value);
+			this.entries.put(storedValue, new Entry(value, true, null, null));
+			return copy;
+		} catch (final NotSerializableException e) {
+			// Contains objects that we can't copy - the caller keeps the decoded value
+			this.entries.put(storedValue, new Entry(null, false, serializer, data));
+			return value;
+		}
+	}
+
+	/**
+	 * The count of cached values.
+	 *
+	 * @return the approximate count of cached values
+	 */
+	public long size() {
+		return this.entries.size();
+	}
+
+}
@@ -0,0 +1,45 @@
+package org.portletbeans.preferences.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.Serializable;
+
+/**
+ * Uses the Java object serialization.
+ *
+ * This is the default serializer, as every previous version of the
+ * {@link org.portletbeans.preferences.SerializableFieldHandler} wrote its values with it.
+ *
+ * @author Tobias Liefke
+ */
+public final class JavaPreferenceSerializer implements PreferenceSerializer {
+
+	private static final int BYTE_BITS = 8;
+
+	@Override
+	public boolean accepts(final byte[] data) {
+		return data.length >= 2 && data[0] == (byte) (ObjectStreamConstants.STREAM_MAGIC >> BYTE_BITS)
+				&& data[1] == (byte) ObjectStreamConstants.STREAM_MAGIC;
+	}
+
+	@Override
+	public Serializable deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			return (Serializable) input.readObject();
+		}
+	}
+
+	@Override
+	public byte[] serialize(final Serializable value) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (ObjectOutputStream output = new ObjectOutputStream(buffer)) {
+			output.writeObject(value);
+		}
+		return buffer.toByteArray();
+	}
+
+}
@@ -0,0 +1,54 @@
+package org.portletbeans.preferences.serializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.portletbeans.preferences.SerializableFieldHandler;
+
+/**
+ * Converts serializable values to and from the binary representation that is stored by the
+ * {@link SerializableFieldHandler}.
+ *
+ * All serializers that are listed in the index file
+ * {@code META-INF/portletbeans/org.portletbeans.preferences.serializer.PreferenceSerializer} are used to read stored
+ * values, so a value can be read even if it was written by another serializer than the one that is currently
+ * configured for writing. Implementations need a public default constructor and must be thread safe.
+ *
+ * @author Tobias Liefke
+ */
+public interface PreferenceSerializer {
+
+	/**
+	 * Indicates that the given data was written by this serializer.
+	 *
+	 * @param data
+	 *            the stored data
+	 * @return {@code true} if {@link #deserialize(byte[])} can read the data
+	 */
+	boolean accepts(final byte[] data);
+
+	/**
+	 * Reads a value.
+	 *
+	 * @param data
+	 *            the stored data, {@link #accepts(byte[]) accepted} by this serializer
+	 * @return the value
+	 * @throws IOException
+	 *             if the data is not valid
+	 * @throws ClassNotFoundException
+	 *             if a class of the stored value is not available
+	 */
+	Serializable deserialize(final byte[] data) throws IOException, ClassNotFoundException;
+
+	/**
+	 * Writes a value.
+	 *
+	 * @param value
+	 *            the value to write, never {@code null}
+	 * @return the data to store
+	 * @throws IOException
+	 *             if the value could not be written
+	 */
+	byte[] serialize(final Serializable value) throws IOException;
+
+}
@@ -0,0 +1,56 @@
+package org.portletbeans.util;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+/**
+ * A lock-free cache for metadata that is computed once per class.
+ *
+ * The metadata is attached to the class with a {@link ClassValue}, so a lookup of already computed metadata needs no
+ * lock. If more than one thread requests the metadata of a class for the first time, only one of them computes it,
+ * the others wait for that result. If the computation fails, it is repeated with the next request.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the metadata
+ */
+public abstract class ClassMetadataCache<T> {
+
+	private final ClassValue<Supplier<T>> values = new ClassValue<Supplier<T>>() {
+
+		@Override
+		protected Supplier<T> computeValue(final Class<?> type) {
+			// Only the supplier that is published by the ClassValue will compute the metadata
+			return Suppliers.memoize(new Supplier<T>() {
+
+				@Override
+				public T get() {
+					return compute(type);
+				}
+			});
+		}
+	};
+
+	/**
+	 * Computes the metadata for a class.
+	 *
+	 * Called only once per class, as long as no exception is thrown.
+	 *
+	 * @param type
+	 *            the inspected class
+	 * @return the metadata of the class
+	 */
+	protected abstract T compute(final Class<?> type);
+
+	/**
+	 * Resolves the metadata for a class.
+	 *
+	 * @param type
+	 *            the inspected class
+	 * @return the metadata of the class, computed during the first call
+	 */
+	public T get(final Class<?> type) {
+		return this.values.get(type).get();
+	}
+
+}
@@ -1,14 +1,31 @@
 package org.portletbeans.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.common.collect.ImmutableSet;
 
 /**
  * Helper for inspection of classes.
@@ -17,6 +34,11 @@ import java.util.NoSuchElementException;
  */
 public final class ClassUtil {
 
+	/**
+	 * The folder in the classpath that contains the index files for {@link #getIndexedClasses(Class)}.
+	 */
+	public static final String INDEX_FOLDER = "META-INF/portletbeans/";
+
 	private static final Map<Class<?>, Object> NULL_VALUES = new HashMap<>();
 
 	static {
@@ -30,6 +52,10 @@ public final class ClassUtil {
 		NULL_VALUES.put(double.class, new Double(0));
 	}
 
+	private static final Set<Class<?>> IMMUTABLE_CLASSES = ImmutableSet.<Class<?>> of(String.class, Integer.class,
+			Long.class, Double.class, Float.class, Boolean.class, Short.class, Byte.class, Character.class,
+			BigDecimal.class, BigInteger.class, UUID.class, Locale.class, Currency.class);
+
 	private static <I> Type getActualTypeArgument(final Class<? extends I> instanceClass, final Class<I> superClass,
 			final int argumentIndex) {
 		final List<Type> parents = new ArrayList<>();
@@ -85,6 +111,50 @@ public final class ClassUtil {
 				"Can't find binding for the " + argumentIndex + ". argument of " + superClass + " in " + instanceClass);
 	}
 
+	/**
+	 * Resolves all classes that are listed in the index files for the given type.
+	 *
+	 * An index file is found at {@value #INDEX_FOLDER}<i>qualified name of the type</i> and contains the qualified
+	 * names of the listed classes, one per line. Empty lines and everything after a '#' is ignored. All index files
+	 * that are visible to the class loader of the type and to the context class loader of the current thread are
+	 * used.
+	 *
+	 * In contrast to scanning the classpath, this reads only the listed classes, so the time needed doesn't depend on
+	 * the size of the classpath.
+	 *
+	 * @param type
+	 *            the type of the listed classes, usually an interface
+	 * @return all listed classes, in the order of the index files
+	 * @throws IllegalArgumentException
+	 *             if an index file is not readable or contains an invalid entry
+	 */
+	public static <I> Set<Class<? extends I>> getIndexedClasses(final Class<I> type) {
+		final String indexName = INDEX_FOLDER + type.getName();
+		final Set<ClassLoader> classLoaders = new LinkedHashSet<>();
+		classLoaders.add(type.getClassLoader() == null ? ClassLoader.getSystemClassLoader() : type.getClassLoader());
+		if (Thread.currentThread().getContextClassLoader() != null) {
+			classLoaders.add(Thread.currentThread().getContextClassLoader());
+		}
+
+		final Set<URL> indexFiles = new LinkedHashSet<>();
+		try {
+			for (final ClassLoader classLoader : classLoaders) {
+				final Enumeration<URL> resources = classLoader.getResources(indexName);
+				indexFiles.addAll(Collections.list(resources));
+			}
+		} catch (final IOException e) {
+			throw new IllegalArgumentException("Can't find index files for " + type, e);
+		}
+
+		final Set<Class<? extends I>> result = new LinkedHashSet<>();
+		for (final URL indexFile : indexFiles) {
+			for (final String className : readIndex(indexFile)) {
+				result.add(loadIndexedClass(type, className, classLoaders, indexFile));
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Finds the value to use as initial value for the given type.
 	 *
@@ -96,6 +166,52 @@ public final class ClassUtil {
 		return (T) NULL_VALUES.get(type);
 	}
 
+	/**
+	 * Indicates that the instances of the given class can't change their state.
+	 *
+	 * Only known classes are identified: wrappers, strings, enums, big numbers, UUIDs, locales and currencies.
+	 *
+	 * @param type
+	 *            the exact class of the instance
+	 * @return {@code true} if the instances of the class may be shared
+	 */
+	public static boolean isImmutable(final Class<?> type) {
+		return IMMUTABLE_CLASSES.contains(type) || Enum.class.isAssignableFrom(type);
+	}
+
+	private static <I> Class<? extends I> loadIndexedClass(final Class<I> type, final String className,
+			final Set<ClassLoader> classLoaders, final URL indexFile) {
+		for (final ClassLoader classLoader : classLoaders) {
+			try {
+				final Class<?> indexedClass = Class.forName(className, false, classLoader);
+				if (!type.isAssignableFrom(indexedClass)) {
+					throw new IllegalArgumentException(
+							"Class " + className + " in index " + indexFile + " is not a " + type.getName());
+				}
+				return indexedClass.asSubclass(type);
+			} catch (final ClassNotFoundException e) {
+				// Try the next class loader
+			}
+		}
+		throw new IllegalArgumentException("Can't find class " + className + " from index " + indexFile);
+	}
+
+	private static List<String> readIndex(final URL indexFile) {
+		final List<String> classNames = new ArrayList<>();
+		try (InputStream input = indexFile.openStream()) {
+			for (final String line : IOUtils.readLines(input, StandardCharsets.UTF_8)) {
+				final int commentStart = line.indexOf('#');
+				final String className = (commentStart < 0 ? line : line.substring(0, commentStart)).trim();
+				if (!className.isEmpty()) {
+					classNames.add(className);
+				}
+			}
+		} catch (final IOException e) {
+			throw new IllegalArgumentException("Can't read index file " + indexFile, e);
+		}
+		return classNames;
+	}
+
 	private ClassUtil() {
 		// Helper class
 	}
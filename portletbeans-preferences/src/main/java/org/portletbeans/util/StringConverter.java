@@ -0,0 +1,193 @@
+package org.portletbeans.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import org.apache.commons.lang3.ClassUtils;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Converts strings to objects of a specific type.
+ *
+ * The wrapper types of the primitives are converted with their {@code valueOf} methods, which reuse cached instances.
+ * All other types are converted with their public string constructor or - if they have none - with a public static
+ * {@code valueOf(String)} or {@code parse(String)} method. These are invoked with a {@link MethodHandle}, which is
+ * resolved once per type.
+ *
+ * @author Tobias Liefke
+ * @param <T>
+ *            the type of the converted objects
+ */
+@RequiredArgsConstructor
+public abstract class StringConverter<T> {
+
+	/**
+	 * Converts with a method handle to a factory method or a constructor.
+	 */
+	private static final class MethodHandleConverter<T> extends StringConverter<T> {
+
+		private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+
+		private final MethodHandle handle;
+
+		MethodHandleConverter(final Class<T> type, final MethodHandle handle) {
+			super(type);
+			this.handle = handle.asType(CONVERTER_TYPE);
+		}
+
+		@Override
+		public T convert(final String value) {
+			try {
+				return (T) this.handle.invokeExact(value);
+			} catch (final RuntimeException | Error e) {
+				throw e;
+			} catch (final Throwable e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+	}
+
+	private static final Map<Class<?>, StringConverter<?>> WRAPPER_CONVERTERS = ImmutableMap
+			.<Class<?>, StringConverter<?>> builder().//
+			put(Boolean.class, new StringConverter<Boolean>(Boolean.class) {
+
+				@Override
+				public Boolean convert(final String value) {
+					return Boolean.valueOf(value);
+				}
+			}).//
+			put(Byte.class, new StringConverter<Byte>(Byte.class) {
+
+				@Override
+				public Byte convert(final String value) {
+					return Byte.valueOf(value);
+				}
+			}).//
+			put(Short.class, new StringConverter<Short>(Short.class) {
+
+				@Override
+				public Short convert(final String value) {
+					return Short.valueOf(value);
+				}
+			}).//
+			put(Integer.class, new StringConverter<Integer>(Integer.class) {
+
+				@Override
+				public Integer convert(final String value) {
+					return Integer.valueOf(value);
+				}
+			}).//
+			put(Long.class, new StringConverter<Long>(Long.class) {
+
+				@Override
+				public Long convert(final String value) {
+					return Long.valueOf(value);
+				}
+			}).//
+			put(Float.class, new StringConverter<Float>(Float.class) {
+
+				@Override
+				public Float convert(final String value) {
+					return Float.valueOf(value);
+				}
+			}).//
+			put(Double.class, new StringConverter<Double>(Double.class) {
+
+				@Override
+				public Double convert(final String value) {
+					return Double.valueOf(value);
+				}
+			}).//
+			build();
+
+	private static final String[] FACTORY_METHODS = { "valueOf", "parse" };
+
+	private static Method findFactoryMethod(final Class<?> type) {
+		for (final String name : FACTORY_METHODS) {
+			try {
+				final Method method = type.getMethod(name, String.class);
+				if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+					return method;
+				}
+			} catch (final NoSuchMethodException e) {
+				// Try the next one
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates the converter for the given type.
+	 *
+	 * @param type
+	 *            the target type, primitive types are converted to their wrapper type
+	 * @return the converter
+	 * @throws NoSuchMethodException
+	 *             if the type has neither a constructor nor a static factory method, that accept a string
+	 */
+	public static <T> StringConverter<T> of(final Class<T> type) throws NoSuchMethodException {
+		final Class<T> wrapper = (Class<T>) ClassUtils.primitiveToWrapper(type);
+		final StringConverter<T> wrapperConverter = (StringConverter<T>) WRAPPER_CONVERTERS.get(wrapper);
+		if (wrapperConverter != null) {
+			return wrapperConverter;
+		}
+		try {
+			try {
+				return of(wrapper.getConstructor(String.class));
+			} catch (final NoSuchMethodException e) {
+				// Types that are already stored with their string constructor keep it, factories are the fallback
+				final Method factoryMethod = findFactoryMethod(wrapper);
+				if (factoryMethod == null) {
+					throw e;
+				}
+				return new MethodHandleConverter<>(wrapper, MethodHandles.publicLookup().unreflect(factoryMethod));
+			}
+		} catch (final IllegalAccessException e) {
+			throw new NoSuchMethodException("Can't access the string conversion of " + type + ": " + e);
+		}
+	}
+
+	/**
+	 * Creates the converter that uses the given string constructor.
+	 *
+	 * @param constructor
+	 *            the public constructor that accepts a string
+	 * @return the converter
+	 * @throws IllegalAccessException
+	 *             if the constructor is not accessible
+	 */
+	public static <T> StringConverter<T> of(final Constructor<T> constructor) throws IllegalAccessException {
+		return new MethodHandleConverter<>(constructor.getDeclaringClass(),
+				MethodHandles.publicLookup().unreflectConstructor(constructor));
+	}
+
+	/**
+	 * The type of the converted objects.
+	 */
+	@Getter
+	private final Class<T> type;
+
+	/**
+	 * Converts a string.
+	 *
+	 * @param value
+	 *            the string to convert, not {@code null}
+	 * @return the converted object
+	 * @throws IllegalArgumentException
+	 *             if the string is not valid for the type
+	 * @throws RuntimeException
+	 *             any other exception thrown by the conversion
+	 */
+	public abstract T convert(final String value);
+
+}
@@ -0,0 +1,28 @@
+package org.portletbeans.preferences.test;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing primitive array fields.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class ArrayTestEntity {
+
+	@PreferenceField(defaultValue = "1, 2, 3")
+	private int[] ints;
+
+	private long[] longs;
+
+	private double[] doubles;
+
+	private boolean[] flags;
+
+}
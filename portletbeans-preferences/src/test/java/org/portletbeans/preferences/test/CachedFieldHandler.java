@@ -0,0 +1,61 @@
+package org.portletbeans.preferences.test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import org.portletbeans.preferences.PreferenceFieldHandler;
+import org.portletbeans.preferences.SerializableFieldHandler;
+import org.portletbeans.preferences.serializer.CompactPreferenceSerializer;
+import org.portletbeans.preferences.serializer.DecodedValueCache;
+import org.portletbeans.preferences.serializer.PreferenceSerializer;
+
+/**
+ * A handler for serializable fields that caches the decoded values and counts the deserializations.
+ *
+ * @author Tobias Liefke
+ */
+public final class CachedFieldHandler implements PreferenceFieldHandler<Serializable> {
+
+	/** The count of values read by the serializer. */
+	public static final AtomicInteger DESERIALIZATIONS = new AtomicInteger();
+
+	private static final PreferenceSerializer SERIALIZER = new PreferenceSerializer() {
+
+		private final CompactPreferenceSerializer delegate = new CompactPreferenceSerializer();
+
+		@Override
+		public boolean accepts(final byte[] data) {
+			return this.delegate.accepts(data);
+		}
+
+		@Override
+		public Serializable deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+			DESERIALIZATIONS.incrementAndGet();
+			return this.delegate.deserialize(data);
+		}
+
+		@Override
+		public byte[] serialize(final Serializable value) throws IOException {
+			return this.delegate.serialize(value);
+		}
+	};
+
+	private final SerializableFieldHandler delegate = new SerializableFieldHandler(SERIALIZER,
+			new DecodedValueCache(10, 10000));
+
+	@Override
+	public Serializable load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		return this.delegate.load(preferences, key, defaultValue);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Serializable value)
+			throws ReadOnlyException {
+		this.delegate.store(preferences, key, value);
+	}
+
+}
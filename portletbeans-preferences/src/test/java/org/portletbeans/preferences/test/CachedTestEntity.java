@@ -0,0 +1,22 @@
+package org.portletbeans.preferences.test;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing the {@link org.portletbeans.preferences.serializer.DecodedValueCache}.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class CachedTestEntity {
+
+	@PreferenceField(handler = CachedFieldHandler.class)
+	private SerializableTestValue value;
+
+}
@@ -0,0 +1,39 @@
+package org.portletbeans.preferences.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.MultiValueCollectionFieldHandler;
+import org.portletbeans.preferences.MultiValueMapFieldHandler;
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing the compact encodings of collections and maps.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class CompactTestEntity {
+
+	@PreferenceField(handler = MultiValueCollectionFieldHandler.class)
+	private List<String> names = new ArrayList<>();
+
+	@PreferenceField(handler = MultiValueCollectionFieldHandler.class)
+	private final List<Integer> numbers = new ArrayList<>();
+
+	@PreferenceField(handler = MultiValueMapFieldHandler.class)
+	private Map<String, Double> prices = new HashMap<>();
+
+	@PreferenceField(handler = MultiValueMapFieldHandler.class)
+	private final Map<Integer, String> labels = new LinkedHashMap<>();
+
+}
@@ -0,0 +1,29 @@
+package org.portletbeans.preferences.test;
+
+import java.util.Currency;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import org.portletbeans.preferences.PreferenceFieldHandler;
+
+/**
+ * A handler for {@link Currency} fields that is registered programmatically by the test.
+ *
+ * @author Tobias Liefke
+ */
+public final class CurrencyFieldHandler implements PreferenceFieldHandler<Currency> {
+
+	@Override
+	public Currency load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		return value == null ? null : Currency.getInstance(value);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Currency value)
+			throws ReadOnlyException {
+		preferences.setValue(key, value == null ? null : value.getCurrencyCode());
+	}
+
+}
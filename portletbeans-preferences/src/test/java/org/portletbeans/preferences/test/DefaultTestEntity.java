@@ -0,0 +1,37 @@
+package org.portletbeans.preferences.test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing the default values of {@link PreferenceField}s.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class DefaultTestEntity {
+
+	@PreferenceField(defaultValue = "SECONDS")
+	private TimeUnit unit;
+
+	@PreferenceField(defaultValue = "86400000")
+	private Date date;
+
+	@PreferenceField(defaultValue = "12")
+	private Integer number;
+
+	@PreferenceField(defaultValue = "12")
+	private long primitiveNumber;
+
+	@PreferenceField(defaultValue = "text")
+	private StringBuilder text;
+
+}
@@ -0,0 +1,25 @@
+package org.portletbeans.preferences.test;
+
+import java.util.Currency;
+import java.util.Locale;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+
+/**
+ * An entity for testing the registration of field handlers.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class HandlerTestEntity {
+
+	private Locale locale;
+
+	private Currency currency;
+
+}
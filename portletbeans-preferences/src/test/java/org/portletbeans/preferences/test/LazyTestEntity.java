@@ -0,0 +1,36 @@
+package org.portletbeans.preferences.test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.LazyCollectionFieldHandler;
+import org.portletbeans.preferences.LazyMapFieldHandler;
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing lazy loaded collections and maps.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class LazyTestEntity {
+
+	private String name;
+
+	@PreferenceField(handler = LazyCollectionFieldHandler.class)
+	private List<ChildTestEntity> children;
+
+	@PreferenceField(handler = LazyCollectionFieldHandler.class)
+	private SortedSet<String> tags;
+
+	@PreferenceField(handler = LazyMapFieldHandler.class)
+	private Map<String, ChildTestEntity> childMap;
+
+}
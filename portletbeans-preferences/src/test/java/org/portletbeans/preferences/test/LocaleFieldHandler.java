@@ -0,0 +1,29 @@
+package org.portletbeans.preferences.test;
+
+import java.util.Locale;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import org.portletbeans.preferences.PreferenceFieldHandler;
+
+/**
+ * A handler for {@link Locale} fields that is registered by the index file in the test resources.
+ *
+ * @author Tobias Liefke
+ */
+public final class LocaleFieldHandler implements PreferenceFieldHandler<Locale> {
+
+	@Override
+	public Locale load(final PortletPreferences preferences, final String key, final String defaultValue) {
+		final String value = preferences.getValue(key, defaultValue);
+		return value == null ? null : Locale.forLanguageTag(value);
+	}
+
+	@Override
+	public void store(final PortletPreferences preferences, final String key, final Locale value)
+			throws ReadOnlyException {
+		preferences.setValue(key, value == null ? null : value.toLanguageTag());
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.portletbeans.preferences.test;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An entity for testing the declared types of map fields.
+ *
+ * Maps without explicit key and value types and maps that can't be instantiated are serialized.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class MapTestEntity {
+
+	private SortedMap<String, Integer> sorted = new TreeMap<>();
+
+	private EnumMap<TimeUnit, String> units = new EnumMap<>(TimeUnit.class);
+
+	private LinkedHashMap<Long, String> ordered = new LinkedHashMap<>();
+
+	private Properties properties;
+
+	private NamedMap named;
+
+	private ImmutableMap<String, Integer> immutable;
+
+	/**
+	 * A map type without own type parameters.
+	 */
+	public static class NamedMap extends HashMap<String, String> {
+
+		private static final long serialVersionUID = 1L;
+
+	}
+
+}
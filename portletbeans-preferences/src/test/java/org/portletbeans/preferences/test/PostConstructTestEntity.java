@@ -0,0 +1,44 @@
+package org.portletbeans.preferences.test;
+
+import javax.annotation.PostConstruct;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+
+/**
+ * An entity for testing the {@link PostConstruct} methods of nested entities.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class PostConstructTestEntity {
+
+	/**
+	 * The nested entity, which is initialized after its fields were loaded.
+	 */
+	@PreferenceEntity
+	@Getter
+	@Setter
+	public static class InitializedEntity {
+
+		private String name;
+
+		private transient String displayName;
+
+		@PostConstruct
+		private void init() {
+			if ("invalid".equals(this.name)) {
+				throw new IllegalStateException("Invalid name");
+			}
+			this.displayName = "Name: " + this.name;
+		}
+
+	}
+
+	private InitializedEntity child;
+
+}
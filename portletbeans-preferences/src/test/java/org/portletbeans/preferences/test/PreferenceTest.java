@@ -3,14 +3,49 @@ package org.portletbeans.preferences.test;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
 import org.apache.commons.lang3.time.DateUtils;
 import org.junit.Test;
+import org.portletbeans.preferences.EnumFieldHandler;
+import org.portletbeans.preferences.FieldAccessStrategy;
+import org.portletbeans.preferences.MapFieldHandler;
 import org.portletbeans.preferences.PreferenceFieldRegistry;
+import org.portletbeans.preferences.PreferencesSnapshot;
+import org.portletbeans.preferences.PreferencesWriteBuffer;
+import org.portletbeans.preferences.SerializableFieldHandler;
+import org.portletbeans.preferences.ToStringFieldHandler;
+import org.portletbeans.preferences.serializer.CompactPreferenceSerializer;
+import org.portletbeans.preferences.serializer.DecodedValueCache;
+import org.portletbeans.preferences.serializer.JavaPreferenceSerializer;
+import org.portletbeans.util.StringConverter;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Bytes;
 
 /**
  * Tests this preferences.
@@ -20,6 +55,28 @@ import org.portletbeans.preferences.PreferenceFieldRegistry;
 // CHECKSTYLE OFF: MagicNumber
 public class PreferenceTest {
 
+	/**
+	 * A value with a string constructor and a static factory method.
+	 */
+	@RequiredArgsConstructor
+	public static final class ConstructedValue {
+
+		/**
+		 * Creates a value with the factory method.
+		 *
+		 * @param value
+		 *            the string representation
+		 * @return the value
+		 */
+		public static ConstructedValue valueOf(final String value) {
+			return new ConstructedValue("valueOf(" + value + ")");
+		}
+
+		@Getter
+		private final String value;
+
+	}
+
 	/**
 	 * Tests that child entities are written and restored correctly from {@link PortletPreferences}.
 	 */
@@ -60,6 +117,939 @@ public class PreferenceTest {
 		assertThat(resultEntity.getMapProperty().get("child4").getName()).isEqualTo("");
 	}
 
+	/**
+	 * Tests that {@link PreferenceFieldRegistry#loadBulk(PortletPreferences, Object)} reads the preferences only once.
+	 */
+	@Test
+	public void testBulkLoad() {
+		final RootTestEntity testEntity = new RootTestEntity();
+		testEntity.setChildProperty(new ChildTestEntity("child"));
+		testEntity.getListProperty()
+				.addAll(Arrays.asList(new ChildTestEntity("child1"), new ChildTestEntity("child2")));
+		final List<String> reads = new ArrayList<>();
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public Map<String, String[]> getMap() {
+				reads.add("*");
+				return super.getMap();
+			}
+
+			@Override
+			public String getValue(final String key, final String defaultValue) {
+				reads.add(key);
+				return super.getValue(key, defaultValue);
+			}
+
+			@Override
+			public String[] getValues(final String key, final String[] defaultValues) {
+				reads.add(key);
+				return super.getValues(key, defaultValues);
+			}
+		};
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		reads.clear();
+
+		final RootTestEntity resultEntity = PreferenceFieldRegistry.loadBulk(preferences, new RootTestEntity());
+
+		assertThat(reads).containsExactly("*");
+		assertThat(resultEntity.getChildProperty().getName()).isEqualTo("child");
+		assertThat(resultEntity.getListProperty()).hasSize(2);
+		assertThat(resultEntity.getListProperty().get(1).getName()).isEqualTo("child2");
+	}
+
+	/**
+	 * Tests that a {@link PreferencesSnapshot} writes only changed values and removes unused collection elements.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testChangeTracking() throws ReadOnlyException {
+		// Initialize the preferences
+		final RootTestEntity testEntity = new RootTestEntity();
+		testEntity.setChildProperty(new ChildTestEntity("child"));
+		testEntity.getListProperty().addAll(Arrays.asList(new ChildTestEntity("child1"), new ChildTestEntity("child2"),
+				new ChildTestEntity("child3")));
+		final List<String> writes = new ArrayList<>();
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public void reset(final String key) throws ReadOnlyException {
+				writes.add(key);
+				super.reset(key);
+			}
+
+			@Override
+			public void setValue(final String key, final String value) throws ReadOnlyException {
+				writes.add(key);
+				super.setValue(key, value);
+			}
+		};
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValue("listProperty.2.name", null)).isEqualTo("child3");
+
+		// Load, change and store the entity again
+		final PreferencesSnapshot snapshot = new PreferencesSnapshot();
+		final RootTestEntity resultEntity = PreferenceFieldRegistry.load(snapshot.track(preferences),
+				new RootTestEntity());
+		resultEntity.getChildProperty().setName("changed");
+		resultEntity.getListProperty().remove(2);
+		writes.clear();
+		PreferenceFieldRegistry.store(snapshot.track(preferences), resultEntity);
+
+		assertThat(writes).containsOnly("childProperty.name", "listProperty.length", "listProperty.2.name",
+				"listProperty.2.subchild");
+		assertThat(preferences.getValue("childProperty.name", null)).isEqualTo("changed");
+		assertThat(preferences.getValue("listProperty.1.name", null)).isEqualTo("child2");
+		assertThat(preferences.getMap()).doesNotContainKey("listProperty.2.name");
+	}
+
+	/**
+	 * Tests that the {@link CompactPreferenceSerializer} writes and reads {@link SerializableTestValue}s and that the
+	 * {@link SerializableFieldHandler} still reads values of the Java object serialization.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testCompactSerializer() throws ReadOnlyException {
+		final SerializableTestValue value = new SerializableTestValue();
+		value.setName("root");
+		value.setCount(-42);
+		value.setRatio(0.5);
+		value.setUnit(TimeUnit.HOURS);
+		value.setDate(new Date(DateUtils.MILLIS_PER_DAY));
+		value.setNumbers(new int[] { 1, 2, 3 });
+		value.getTags().addAll(Arrays.asList("a", "b"));
+		final SerializableTestValue child = new SerializableTestValue();
+		child.setName("child");
+		child.setParent(value);
+		value.getChildren().put("child", child);
+
+		// Write with both serializers
+		final PortletPreferences preferences = new TestPreferences();
+		new SerializableFieldHandler().store(preferences, "java", value);
+		final SerializableFieldHandler compactHandler = new SerializableFieldHandler(new CompactPreferenceSerializer());
+		compactHandler.store(preferences, "compact", value);
+		assertThat(preferences.getValue("compact", "").length())
+				.isLessThan(preferences.getValue("java", "").length());
+
+		// Read with the compact handler
+		for (final String key : Arrays.asList("java", "compact")) {
+			final SerializableTestValue result = (SerializableTestValue) compactHandler.load(preferences, key, null);
+			assertThat(result.getName()).isEqualTo("root");
+			assertThat(result.getCount()).isEqualTo(-42);
+			assertThat(result.getRatio()).isEqualTo(0.5);
+			assertThat(result.getUnit()).isEqualTo(TimeUnit.HOURS);
+			assertThat(result.getDate()).isEqualTo(value.getDate());
+			assertThat(result.getNumbers()).containsExactly(1, 2, 3);
+			assertThat(result.getTags()).containsExactly("a", "b");
+			assertThat(result.getChildren()).containsOnlyKeys("child");
+			assertThat(result.getChildren().get("child").getName()).isEqualTo("child");
+			assertThat(result.getChildren().get("child").getParent()).isSameAs(result);
+		}
+	}
+
+	/**
+	 * Tests that the {@link CompactPreferenceSerializer} doesn't instantiate classes, which it doesn't write itself.
+	 *
+	 * @throws IOException
+	 *             expected for the unsupported collection class
+	 * @throws ClassNotFoundException
+	 *             should not happen
+	 */
+	@Test(expected = InvalidClassException.class)
+	public void testCompactSerializerClasses() throws IOException, ClassNotFoundException {
+		// Header, collection tag, new class, class name
+		final byte[] data = Bytes.concat(new byte[] { 'P', 'B', 1, 16, 0, 16 },
+				"java.util.Vector".getBytes(StandardCharsets.UTF_8), new byte[] { 0 });
+		new CompactPreferenceSerializer().deserialize(data);
+	}
+
+	/**
+	 * Tests that the {@link CompactPreferenceSerializer} doesn't create arrays, which are larger than the stored data.
+	 *
+	 * @throws IOException
+	 *             expected for the invalid length
+	 * @throws ClassNotFoundException
+	 *             should not happen
+	 */
+	@Test(expected = StreamCorruptedException.class)
+	public void testCompactSerializerLengths() throws IOException, ClassNotFoundException {
+		// Header, array tag, new class, class name, length of Integer.MAX_VALUE
+		final byte[] data = Bytes.concat(new byte[] { 'P', 'B', 1, 15, 0, 3 }, "int".getBytes(StandardCharsets.UTF_8),
+				new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+		new CompactPreferenceSerializer().deserialize(data);
+	}
+
+	/**
+	 * Tests that the primitive arrays of {@link ArrayTestEntity} are stored as multiple values of one preference and
+	 * that serialized arrays are still read.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testArrays() throws ReadOnlyException {
+		// Read the default value and a serialized array
+		final PortletPreferences preferences = new TestPreferences();
+		new SerializableFieldHandler().store(preferences, "longs", new long[] { 4L, 5L });
+		final ArrayTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new ArrayTestEntity());
+		assertThat(testEntity.getInts()).containsExactly(1, 2, 3);
+		assertThat(testEntity.getLongs()).containsExactly(4L, 5L);
+		assertThat(testEntity.getDoubles()).isNull();
+		assertThat(testEntity.getFlags()).isNull();
+
+		// Write the arrays
+		testEntity.setInts(new int[0]);
+		testEntity.setDoubles(new double[] { 1.5, -2.0 });
+		testEntity.setFlags(new boolean[] { true, false });
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValues("ints", null)).isEmpty();
+		assertThat(preferences.getValues("longs", null)).containsExactly("4", "5");
+		assertThat(preferences.getValues("doubles", null)).containsExactly("1.5", "-2.0");
+		assertThat(preferences.getValues("flags", null)).containsExactly("true", "false");
+
+		// Read the arrays
+		final ArrayTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new ArrayTestEntity());
+		assertThat(resultEntity.getInts()).isEmpty();
+		assertThat(resultEntity.getLongs()).containsExactly(4L, 5L);
+		assertThat(resultEntity.getDoubles()).containsExactly(1.5, -2.0);
+		assertThat(resultEntity.getFlags()).containsExactly(true, false);
+	}
+
+	/**
+	 * Tests that the parsed default values of {@link DefaultTestEntity} are used for missing preferences.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testDefaultValues() throws ReadOnlyException {
+		// Read the default values
+		final PortletPreferences preferences = new TestPreferences();
+		final DefaultTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new DefaultTestEntity());
+		assertThat(testEntity.getUnit()).isSameAs(TimeUnit.SECONDS);
+		assertThat(testEntity.getDate()).isEqualTo(new Date(DateUtils.MILLIS_PER_DAY));
+		assertThat(testEntity.getNumber()).isEqualTo(12);
+		assertThat(testEntity.getPrimitiveNumber()).isEqualTo(12L);
+		assertThat(testEntity.getText().toString()).isEqualTo("text");
+
+		// Mutable defaults are not shared
+		final DefaultTestEntity secondEntity = PreferenceFieldRegistry.load(preferences, new DefaultTestEntity());
+		assertThat(secondEntity.getDate()).isEqualTo(testEntity.getDate()).isNotSameAs(testEntity.getDate());
+		assertThat(secondEntity.getText()).isNotSameAs(testEntity.getText());
+		testEntity.getText().append(" changed");
+		assertThat(PreferenceFieldRegistry.load(preferences, new DefaultTestEntity()).getText().toString())
+				.isEqualTo("text");
+
+		// Read the stored values and ignore unknown enum constants
+		preferences.setValue("unit", "UNKNOWN");
+		preferences.setValue("date", "0");
+		preferences.setValue("number", "3");
+		preferences.setValue("primitiveNumber", "4");
+		final DefaultTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new DefaultTestEntity());
+		assertThat(resultEntity.getUnit()).isSameAs(TimeUnit.SECONDS);
+		assertThat(resultEntity.getDate()).isEqualTo(new Date(0));
+		assertThat(resultEntity.getNumber()).isEqualTo(3);
+		assertThat(resultEntity.getPrimitiveNumber()).isEqualTo(4L);
+
+		// Both load methods use the default for unknown enum constants
+		final EnumFieldHandler<TimeUnit> enumHandler = new EnumFieldHandler<>(TimeUnit.class);
+		assertThat(enumHandler.load(preferences, "unit", "SECONDS")).isSameAs(TimeUnit.SECONDS);
+		assertThat(enumHandler.loadOrDefault(preferences, "unit", TimeUnit.SECONDS)).isSameAs(TimeUnit.SECONDS);
+		assertThat(enumHandler.load(preferences, "unit", "INVALID")).isNull();
+		assertThat(enumHandler.loadOrDefault(preferences, "unit", null)).isNull();
+	}
+
+	/**
+	 * Tests that the collections of {@link CompactTestEntity} are stored as multiple values of one preference and that
+	 * the indexed layout is still read.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testCompactCollections() throws ReadOnlyException {
+		// Read the indexed layout
+		final PortletPreferences preferences = new TestPreferences();
+		preferences.setValue("names.length", "2");
+		preferences.setValue("names.0", "n1");
+		preferences.setValue("names.1", "n2");
+		final CompactTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new CompactTestEntity());
+		assertThat(testEntity.getNames()).containsExactly("n1", "n2");
+		assertThat(testEntity.getNumbers()).isEmpty();
+
+		// Write the compact layout
+		testEntity.getNames().add("n3");
+		testEntity.getNumbers().addAll(Arrays.asList(3, 2, 1));
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValues("names", null)).containsExactly("n1", "n2", "n3");
+		assertThat(preferences.getValues("numbers", null)).containsExactly("3", "2", "1");
+		assertThat(preferences.getMap()).containsOnlyKeys("names", "numbers", "prices", "labels");
+
+		// Read the compact layout
+		final CompactTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new CompactTestEntity());
+		assertThat(resultEntity.getNames()).containsExactly("n1", "n2", "n3");
+		assertThat(resultEntity.getNumbers()).containsExactly(3, 2, 1);
+
+		// Empty collections stay empty
+		resultEntity.getNumbers().clear();
+		PreferenceFieldRegistry.store(preferences, resultEntity);
+		assertThat(PreferenceFieldRegistry.load(preferences, new CompactTestEntity()).getNumbers()).isEmpty();
+	}
+
+	/**
+	 * Tests that the maps of {@link CompactTestEntity} are stored as multiple values of one preference and that the
+	 * indexed layout is still read.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testCompactMaps() throws ReadOnlyException {
+		// Read the indexed layout
+		final PortletPreferences preferences = new TestPreferences();
+		preferences.setValue("prices.length", "2");
+		preferences.setValue("prices.0k", "a");
+		preferences.setValue("prices.0v", "1.5");
+		preferences.setValue("prices.1k", "b");
+		preferences.setValue("prices.1v", "2.5");
+		preferences.setValue("labels.length", "1");
+		preferences.setValue("labels.0k", "1");
+		preferences.setValue("labels.0v", "one");
+		final CompactTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new CompactTestEntity());
+		assertThat(testEntity.getPrices()).containsOnly(entry("a", 1.5), entry("b", 2.5));
+		assertThat(testEntity.getLabels()).containsExactly(entry(1, "one"));
+
+		// Write the compact layout
+		testEntity.getPrices().remove("b");
+		testEntity.getLabels().put(2, "two");
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValues("prices", null)).containsExactly("a", "1.5");
+		assertThat(preferences.getValues("labels", null)).containsExactly("1", "one", "2", "two");
+		assertThat(preferences.getMap()).containsOnlyKeys("names", "numbers", "prices", "labels");
+
+		// Read the compact layout
+		final CompactTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new CompactTestEntity());
+		assertThat(resultEntity.getPrices()).containsOnly(entry("a", 1.5));
+		assertThat(resultEntity.getLabels()).containsExactly(entry(1, "one"), entry(2, "two"));
+	}
+
+	/**
+	 * Tests that a {@link DecodedValueCache} shares immutable values and copies mutable values.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testDecodedValueCache() throws ReadOnlyException {
+		final DecodedValueCache cache = new DecodedValueCache(10, 10000);
+		final SerializableFieldHandler handler = new SerializableFieldHandler(new JavaPreferenceSerializer(), cache);
+		final PortletPreferences preferences = new TestPreferences();
+		handler.store(preferences, "immutable", new BigDecimal("1.5"));
+		handler.store(preferences, "mutable", new ArrayList<>(Arrays.asList("a", "b")));
+
+		// Immutable values are shared
+		final Serializable immutable = handler.load(preferences, "immutable", null);
+		assertThat(handler.load(preferences, "immutable", null)).isSameAs(immutable);
+
+		// Mutable values are copied
+		final List<String> mutable = (List<String>) handler.load(preferences, "mutable", null);
+		mutable.add("c");
+		assertThat((List<String>) handler.load(preferences, "mutable", null)).containsExactly("a", "b");
+		assertThat(cache.size()).isEqualTo(2);
+
+		// Copies keep the state of the first load, even if the constructor was not called
+		handler.store(preferences, "value", new SerializableTestValue());
+		final SerializableTestValue value = (SerializableTestValue) handler.load(preferences, "value", null);
+		assertThat(value.getTransientName()).isNull();
+		final SerializableTestValue copy = (SerializableTestValue) handler.load(preferences, "value", null);
+		assertThat(copy).isNotSameAs(value);
+		assertThat(copy.getTransientName()).isNull();
+	}
+
+	/**
+	 * Tests that a {@link DecodedValueCache} copies the values of a field without deserializing them again.
+	 */
+	@Test
+	public void testDecodedValueCacheCopies() {
+		final SerializableTestValue value = new SerializableTestValue();
+		value.setName("parent");
+		value.getTags().add("a");
+		final SerializableTestValue child = new SerializableTestValue();
+		child.setParent(value);
+		child.setTransientName("changed");
+		value.getChildren().put("child", child);
+		final CachedTestEntity testEntity = new CachedTestEntity();
+		testEntity.setValue(value);
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		// Only the first load deserializes the value
+		final int deserializations = CachedFieldHandler.DESERIALIZATIONS.get();
+		final SerializableTestValue first = PreferenceFieldRegistry.load(preferences, new CachedTestEntity())
+				.getValue();
+		final SerializableTestValue second = PreferenceFieldRegistry.load(preferences, new CachedTestEntity())
+				.getValue();
+		assertThat(CachedFieldHandler.DESERIALIZATIONS.get()).isEqualTo(deserializations + 1);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getName()).isEqualTo("parent");
+		assertThat(second.getChildren().get("child").getParent()).isSameAs(second);
+		assertThat(second.getChildren().get("child").getTransientName()).isEqualTo("initial");
+
+		// Changes of a copy don't leak into the cache
+		first.setName("changed");
+		first.getTags().add("b");
+		second.getChildren().clear();
+		final SerializableTestValue third = PreferenceFieldRegistry.load(preferences, new CachedTestEntity())
+				.getValue();
+		assertThat(CachedFieldHandler.DESERIALIZATIONS.get()).isEqualTo(deserializations + 1);
+		assertThat(third.getName()).isEqualTo("parent");
+		assertThat(third.getTags()).containsExactly("a");
+		assertThat(third.getChildren()).containsOnlyKeys("child");
+	}
+
+	/**
+	 * Tests that handlers from the index files and registered handlers are used for {@link HandlerTestEntity}.
+	 */
+	@Test
+	public void testHandlerRegistration() {
+		PreferenceFieldRegistry.register(Currency.class, new CurrencyFieldHandler());
+
+		// Initialize the test entity
+		final HandlerTestEntity testEntity = new HandlerTestEntity();
+		testEntity.setLocale(Locale.GERMANY);
+		testEntity.setCurrency(Currency.getInstance("EUR"));
+
+		// Store and test the preferences
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		assertThat(preferences.getValue("locale", "")).isEqualTo("de-DE");
+		assertThat(preferences.getValue("currency", "")).isEqualTo("EUR");
+
+		// Load the preferences
+		final HandlerTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new HandlerTestEntity());
+		assertThat(resultEntity.getLocale()).isEqualTo(testEntity.getLocale());
+		assertThat(resultEntity.getCurrency()).isEqualTo(testEntity.getCurrency());
+	}
+
+	/**
+	 * Tests that immutable entities are shared until the preferences change.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutableEntities() throws ReadOnlyException {
+		final RootTestEntity testEntity = new RootTestEntity();
+		testEntity.setChildProperty(new ChildTestEntity("child"));
+		testEntity.getListProperty().add(new ChildTestEntity("child1"));
+		testEntity.getMapProperty().put("child2", new ChildTestEntity("2"));
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		// Load the shared entity
+		final RootTestEntity sharedEntity = PreferenceFieldRegistry.loadShared(preferences, "instance",
+				RootTestEntity.class);
+		assertThat(sharedEntity.getChildProperty().getName()).isEqualTo("child");
+		assertThat(sharedEntity.getListProperty()).hasSize(1);
+		assertThat(sharedEntity.getMapProperty().get("child2").getName()).isEqualTo("2");
+		assertThat(PreferenceFieldRegistry.loadShared(preferences, "instance", RootTestEntity.class))
+				.isSameAs(sharedEntity);
+		assertThat(PreferenceFieldRegistry.loadShared(preferences, "other", RootTestEntity.class))
+				.isNotSameAs(sharedEntity);
+
+		// Load a new entity after a change
+		testEntity.getChildProperty().setName("changed");
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		final RootTestEntity changedEntity = PreferenceFieldRegistry.loadShared(preferences, "instance",
+				RootTestEntity.class);
+		assertThat(changedEntity).isNotSameAs(sharedEntity);
+		assertThat(changedEntity.getChildProperty().getName()).isEqualTo("changed");
+
+		// The collections are unmodifiable
+		try {
+			changedEntity.getListProperty().clear();
+		} finally {
+			assertThat(changedEntity.getListProperty()).hasSize(1);
+		}
+	}
+
+	/**
+	 * Tests that the maps of immutable entities are unmodifiable.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutableEntityMaps() throws ReadOnlyException {
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, new RootTestEntity());
+		final RootTestEntity immutableEntity = PreferenceFieldRegistry.loadImmutable(preferences,
+				RootTestEntity.class);
+		try {
+			immutableEntity.getMapProperty().put("child", new ChildTestEntity("child"));
+		} finally {
+			assertThat(immutableEntity.getMapProperty()).isEmpty();
+		}
+	}
+
+	/**
+	 * Tests that entities with mutable values, like the {@link Date} of {@link DefaultTestEntity}, are not shared.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testMutableEntities() {
+		PreferenceFieldRegistry.loadShared(new TestPreferences(), "instance", DefaultTestEntity.class);
+	}
+
+	/**
+	 * Tests that the collections and maps of {@link LazyTestEntity} are loaded on the first access.
+	 */
+	@Test
+	public void testLazyLoading() {
+		final LazyTestEntity testEntity = new LazyTestEntity();
+		testEntity.setName("root");
+		testEntity.setChildren(Arrays.asList(new ChildTestEntity("child1"), new ChildTestEntity("child2")));
+		testEntity.setTags(new TreeSet<>(Arrays.asList("b", "a")));
+		final Map<String, ChildTestEntity> childMap = new TreeMap<>();
+		childMap.put("child3", new ChildTestEntity("3"));
+		testEntity.setChildMap(childMap);
+
+		final List<String> readKeys = new ArrayList<>();
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public String getValue(final String key, final String defaultValue) {
+				readKeys.add(key);
+				return super.getValue(key, defaultValue);
+			}
+		};
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		// Load only the name
+		readKeys.clear();
+		final LazyTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new LazyTestEntity());
+		assertThat(readKeys).containsExactly("name");
+		assertThat(resultEntity.getName()).isEqualTo("root");
+
+		// Load the collections and maps on access
+		assertThat(resultEntity.getChildren()).hasSize(2);
+		assertThat(resultEntity.getChildren().get(1).getName()).isEqualTo("child2");
+		assertThat(readKeys).contains("children.length").doesNotContain("tags.length", "childMap.length");
+		assertThat(resultEntity.getTags()).containsExactly("a", "b");
+		assertThat(resultEntity.getTags().first()).isEqualTo("a");
+		assertThat(resultEntity.getChildMap()).containsOnlyKeys("child3");
+		assertThat(resultEntity.getChildMap().get("child3").getName()).isEqualTo("3");
+	}
+
+	/**
+	 * Tests that the maps of {@link MapTestEntity} are loaded with their declared types and that maps, which were
+	 * serialized before, are still read.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testMapTypes() throws ReadOnlyException {
+		// Read a serialized map
+		final PortletPreferences preferences = new TestPreferences();
+		final TreeMap<String, Integer> serialized = new TreeMap<>();
+		serialized.put("b", 2);
+		serialized.put("a", 1);
+		new SerializableFieldHandler().store(preferences, "sorted", serialized);
+		final MapTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new MapTestEntity());
+		assertThat(testEntity.getSorted()).isInstanceOf(TreeMap.class).containsExactly(entry("a", 1), entry("b", 2));
+
+		// Write the indexed layout
+		testEntity.getSorted().put("c", 3);
+		testEntity.getUnits().put(TimeUnit.SECONDS, "s");
+		testEntity.getUnits().put(TimeUnit.DAYS, "d");
+		testEntity.getOrdered().put(3L, "three");
+		testEntity.getOrdered().put(1L, "one");
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValue("sorted", null)).isNull();
+		assertThat(preferences.getValue("sorted.length", null)).isEqualTo("3");
+
+		// Read the indexed layout
+		final MapTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new MapTestEntity());
+		assertThat(resultEntity.getSorted()).isInstanceOf(TreeMap.class)
+				.containsExactly(entry("a", 1), entry("b", 2), entry("c", 3));
+		assertThat(resultEntity.getUnits()).containsExactly(entry(TimeUnit.SECONDS, "s"), entry(TimeUnit.DAYS, "d"));
+		assertThat(resultEntity.getOrdered()).containsExactly(entry(3L, "three"), entry(1L, "one"));
+	}
+
+	/**
+	 * Tests that the maps of {@link MapTestEntity} without explicit key and value types or without default constructor
+	 * are serialized.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testSerializedMaps() throws ReadOnlyException {
+		final MapTestEntity testEntity = new MapTestEntity();
+		testEntity.setProperties(new Properties());
+		testEntity.getProperties().setProperty("key", "value");
+		testEntity.setNamed(new MapTestEntity.NamedMap());
+		testEntity.getNamed().put("name", "value");
+		testEntity.setImmutable(ImmutableMap.of("one", 1));
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getMap()).doesNotContainKey("properties.length").doesNotContainKey("named.length")
+				.doesNotContainKey("immutable.length");
+
+		final MapTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new MapTestEntity());
+		assertThat(resultEntity.getProperties()).containsExactly(entry((Object) "key", (Object) "value"));
+		assertThat(resultEntity.getNamed()).containsExactly(entry("name", "value"));
+		assertThat(resultEntity.getImmutable()).containsExactly(entry("one", 1));
+	}
+
+	/**
+	 * Tests that a {@link MapFieldHandler} rejects a field with a map type that can't be instantiated.
+	 *
+	 * @throws NoSuchFieldException
+	 *             should not happen
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUninstantiableMapType() throws NoSuchFieldException {
+		new MapFieldHandler<>(MapTestEntity.class.getDeclaredField("immutable"));
+	}
+
+	/**
+	 * Tests that primitive fields are loaded and stored without boxing and keep their value for invalid preferences.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testPrimitiveFields() throws ReadOnlyException {
+		// Read the default values
+		final PortletPreferences preferences = new TestPreferences();
+		final PrimitiveTestEntity testEntity = PreferenceFieldRegistry.load(preferences, new PrimitiveTestEntity());
+		assertThat(testEntity.getCount()).isEqualTo(42);
+		assertThat(testEntity.getSize()).isEqualTo(1L);
+		assertThat(testEntity.getRatio()).isEqualTo(0.0);
+		assertThat(testEntity.isEnabled()).isTrue();
+
+		// Write the values
+		testEntity.setCount(-7);
+		testEntity.setSize(Long.MAX_VALUE);
+		testEntity.setRatio(0.25);
+		testEntity.setEnabled(false);
+		PreferenceFieldRegistry.store(preferences, testEntity);
+		assertThat(preferences.getValue("count", null)).isEqualTo("-7");
+		assertThat(preferences.getValue("size", null)).isEqualTo(String.valueOf(Long.MAX_VALUE));
+		assertThat(preferences.getValue("ratio", null)).isEqualTo("0.25");
+		assertThat(preferences.getValue("enabled", null)).isEqualTo("false");
+
+		// Read the values and ignore invalid ones
+		preferences.setValue("size", "invalid");
+		final PrimitiveTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new PrimitiveTestEntity());
+		assertThat(resultEntity.getCount()).isEqualTo(-7);
+		assertThat(resultEntity.getSize()).isEqualTo(1L);
+		assertThat(resultEntity.getRatio()).isEqualTo(0.25);
+		assertThat(resultEntity.isEnabled()).isFalse();
+	}
+
+	/**
+	 * Tests the conversions of the {@link StringConverter}.
+	 *
+	 * @throws NoSuchMethodException
+	 *             should not happen
+	 */
+	@Test
+	public void testStringConverter() throws NoSuchMethodException {
+		assertThat(StringConverter.of(int.class).convert("5")).isEqualTo(5);
+		assertThat(StringConverter.of(Boolean.class).convert("true")).isTrue();
+		assertThat(StringConverter.of(BigDecimal.class).convert("1.50")).isEqualTo(new BigDecimal("1.50"));
+		assertThat(StringConverter.of(Level.class).convert("INFO")).isSameAs(Level.INFO);
+		assertThat(StringConverter.of(ConstructedValue.class).convert("a").getValue()).isEqualTo("a");
+		assertThat(new ToStringFieldHandler<>(Level.class).parse("WARNING")).isSameAs(Level.WARNING);
+		assertThat(new ToStringFieldHandler<>(Integer.class).parse("x")).isNull();
+	}
+
+	/**
+	 * Tests that a {@link PreferencesWriteBuffer} writes every key only once.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testWriteBuffer() throws ReadOnlyException {
+		final List<String> writes = new ArrayList<>();
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public void reset(final String key) throws ReadOnlyException {
+				writes.add("reset " + key);
+				super.reset(key);
+			}
+
+			@Override
+			public void setValue(final String key, final String value) throws ReadOnlyException {
+				writes.add(key + '=' + value);
+				super.setValue(key, value);
+			}
+
+			@Override
+			public void setValues(final String key, final String[] values) throws ReadOnlyException {
+				writes.add(key + '=' + Arrays.toString(values));
+				super.setValues(key, values);
+			}
+		};
+		preferences.setValue("removed", "value");
+
+		final PreferencesWriteBuffer buffer = new PreferencesWriteBuffer(preferences);
+		buffer.reset("key1");
+		buffer.setValue("key1", "value1");
+		buffer.setValue("key2", "value2");
+		buffer.setValues("key2", new String[] { "value2", "value3" });
+		buffer.setValue("removed", "value");
+		buffer.reset("removed");
+		assertThat(buffer.getValue("key1", null)).isEqualTo("value1");
+		assertThat(buffer.getValue("removed", null)).isNull();
+		writes.clear();
+		buffer.flush();
+
+		assertThat(writes).containsExactly("key1=value1", "key2=[value2, value3]", "reset removed");
+	}
+
+	/**
+	 * Tests that a {@link PreferencesWriteBuffer} leaves the preferences unchanged, if a key is read only.
+	 *
+	 * @throws ReadOnlyException
+	 *             expected for the read only key
+	 */
+	@Test(expected = ReadOnlyException.class)
+	public void testWriteBufferReadOnly() throws ReadOnlyException {
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public boolean isReadOnly(final String key) {
+				return "readOnly".equals(key);
+			}
+		};
+		preferences.setValue("key1", "old");
+
+		final PreferencesWriteBuffer buffer = new PreferencesWriteBuffer(preferences);
+		buffer.setValue("key1", "new");
+		buffer.setValue("readOnly", "value");
+		try {
+			buffer.flush();
+		} finally {
+			assertThat(preferences.getValue("key1", null)).isEqualTo("old");
+			assertThat(preferences.getMap()).containsOnlyKeys("key1");
+			assertThat(buffer.getValue("key1", null)).isEqualTo("new");
+		}
+	}
+
+	/**
+	 * Tests that a {@link PreferencesWriteBuffer} restores the written keys, if a write fails.
+	 *
+	 * @throws ReadOnlyException
+	 *             expected for the failing key
+	 */
+	@Test(expected = ReadOnlyException.class)
+	public void testWriteBufferRestore() throws ReadOnlyException {
+		final TestPreferences preferences = new TestPreferences() {
+
+			@Override
+			public void setValue(final String key, final String value) throws ReadOnlyException {
+				if ("failing".equals(key)) {
+					throw new ReadOnlyException(key);
+				}
+				super.setValue(key, value);
+			}
+		};
+		preferences.setValue("key1", "old");
+		preferences.setValue("key2", "old");
+
+		final PreferencesWriteBuffer buffer = new PreferencesWriteBuffer(preferences);
+		buffer.setValue("key1", "new");
+		buffer.reset("key2");
+		buffer.setValue("key3", "new");
+		buffer.setValue("failing", "value");
+		try {
+			buffer.flush();
+		} finally {
+			assertThat(preferences.getValue("key1", null)).isEqualTo("old");
+			assertThat(preferences.getValue("key2", null)).isEqualTo("old");
+			assertThat(preferences.getMap()).containsOnlyKeys("key1", "key2");
+		}
+	}
+
+	/**
+	 * Tests that a loaded bean and its {@link PreferencesSnapshot} can be copied, as long as the preferences are
+	 * unchanged.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testSnapshotCopy() throws ReadOnlyException {
+		final PortletPreferences preferences = new TestPreferences();
+		preferences.setValue("stringProperty", "Testing");
+		preferences.setValue("finalProperties.length", "2");
+		preferences.setValue("finalProperties.0", "s1");
+		preferences.setValue("finalProperties.1", "s2");
+
+		// Load and copy the entity
+		final PreferencesSnapshot snapshot = new PreferencesSnapshot();
+		final SimpleTestEntity testEntity = PreferenceFieldRegistry.load(snapshot.track(preferences),
+				new SimpleTestEntity());
+		assertThat(snapshot.matches(preferences)).isTrue();
+		final SimpleTestEntity resultEntity = PreferenceFieldRegistry.copy(testEntity, new SimpleTestEntity());
+		final PreferencesSnapshot resultSnapshot = new PreferencesSnapshot();
+		resultSnapshot.copyFrom(snapshot);
+		assertThat(resultEntity.getStringProperty()).isEqualTo("Testing");
+		assertThat(resultEntity.getFinalProperties()).containsExactly("s1", "s2")
+				.isNotSameAs(testEntity.getFinalProperties());
+
+		// Only changed values are written for the copy
+		resultEntity.setIntProperty(5);
+		PreferenceFieldRegistry.store(resultSnapshot.track(preferences), resultEntity);
+		assertThat(preferences.getValue("intProperty", null)).isEqualTo("5");
+		assertThat(resultSnapshot.matches(preferences)).isTrue();
+		assertThat(snapshot.matches(preferences)).isFalse();
+	}
+
+	/**
+	 * Tests that nested entities are created and initialized with their {@link javax.annotation.PostConstruct} methods.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testNestedEntityCreation() throws ReadOnlyException {
+		final PostConstructTestEntity testEntity = new PostConstructTestEntity();
+		testEntity.setChild(new PostConstructTestEntity.InitializedEntity());
+		testEntity.getChild().setName("child");
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		final PostConstructTestEntity resultEntity = PreferenceFieldRegistry.load(preferences,
+				new PostConstructTestEntity());
+		assertThat(resultEntity.getChild()).isNotSameAs(testEntity.getChild());
+		assertThat(resultEntity.getChild().getName()).isEqualTo("child");
+		assertThat(resultEntity.getChild().getDisplayName()).isEqualTo("Name: child");
+	}
+
+	/**
+	 * Tests that a runtime exception of a {@link javax.annotation.PostConstruct} method of a nested entity is not
+	 * wrapped.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testNestedEntityCreationFailure() throws ReadOnlyException {
+		final PostConstructTestEntity testEntity = new PostConstructTestEntity();
+		testEntity.setChild(new PostConstructTestEntity.InitializedEntity());
+		testEntity.getChild().setName("invalid");
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		PreferenceFieldRegistry.load(preferences, new PostConstructTestEntity());
+	}
+
+	/**
+	 * Tests that {@link PreferenceFieldRegistry#copy(Object, Object)} loads lazy values and copies collections, maps
+	 * and nested entities.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testDeepCopy() throws ReadOnlyException {
+		final LazyTestEntity testEntity = new LazyTestEntity();
+		testEntity.setChildren(Arrays.asList(new ChildTestEntity("child1"), new ChildTestEntity("child2")));
+		testEntity.setTags(new TreeSet<>(Arrays.asList("b", "a")));
+		testEntity.setChildMap(Collections.singletonMap("child3", new ChildTestEntity("3")));
+		final PortletPreferences preferences = new TestPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		// Copy the lazy loaded entity and remove the preferences afterwards
+		final LazyTestEntity loadedEntity = PreferenceFieldRegistry.load(preferences, new LazyTestEntity());
+		final LazyTestEntity resultEntity = PreferenceFieldRegistry.copy(loadedEntity, new LazyTestEntity());
+		for (final String name : Collections.list(preferences.getNames())) {
+			preferences.reset(name);
+		}
+		assertThat(loadedEntity.getChildren()).hasSize(2);
+		assertThat(resultEntity.getChildren()).hasSize(2).isInstanceOf(ArrayList.class);
+		assertThat(resultEntity.getChildren().get(1).getName()).isEqualTo("child2");
+		assertThat(resultEntity.getChildren().get(1)).isNotSameAs(loadedEntity.getChildren().get(1));
+		assertThat(resultEntity.getTags()).containsExactly("a", "b").isInstanceOf(TreeSet.class);
+		assertThat(resultEntity.getChildMap().get("child3").getName()).isEqualTo("3");
+
+		// Both entities are independent
+		resultEntity.getChildren().get(0).setName("changed");
+		resultEntity.getTags().add("c");
+		assertThat(loadedEntity.getChildren().get(0).getName()).isEqualTo("child1");
+		assertThat(loadedEntity.getTags()).containsExactly("a", "b");
+	}
+
+	/**
+	 * Tests that the {@link FieldAccessStrategy#REFLECTION} strategy reads and writes primitive and final fields of
+	 * {@link ReflectionTestEntity}.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testReflectionAccess() throws ReadOnlyException {
+		final FieldAccessStrategy strategy = PreferenceFieldRegistry.getAccessStrategy();
+		PreferenceFieldRegistry.setAccessStrategy(FieldAccessStrategy.REFLECTION);
+		try {
+			// Write the values
+			final ReflectionTestEntity testEntity = new ReflectionTestEntity();
+			testEntity.setCount(-5);
+			testEntity.setSize(Long.MIN_VALUE);
+			testEntity.setRatio(1.25);
+			testEntity.setEnabled(true);
+			testEntity.setLetter('x');
+			testEntity.setName("reflection");
+			testEntity.setDate(new Date(DateUtils.MILLIS_PER_DAY));
+			testEntity.getNames().addAll(Arrays.asList("n1", "n2"));
+			testEntity.getNumbers().put("one", 1);
+			testEntity.getChild().setName("child");
+			final PortletPreferences preferences = new TestPreferences();
+			PreferenceFieldRegistry.store(preferences, testEntity);
+			assertThat(preferences.getValue("count", null)).isEqualTo("-5");
+			assertThat(preferences.getValue("letter", null)).isEqualTo("x");
+			assertThat(preferences.getValue("child.name", null)).isEqualTo("child");
+
+			// Read the values into the primitive and final fields
+			final ReflectionTestEntity resultEntity = PreferenceFieldRegistry.load(preferences,
+					new ReflectionTestEntity());
+			assertThat(resultEntity.getCount()).isEqualTo(-5);
+			assertThat(resultEntity.getSize()).isEqualTo(Long.MIN_VALUE);
+			assertThat(resultEntity.getRatio()).isEqualTo(1.25);
+			assertThat(resultEntity.isEnabled()).isTrue();
+			assertThat(resultEntity.getLetter()).isEqualTo('x');
+			assertThat(resultEntity.getName()).isEqualTo("reflection");
+			assertThat(resultEntity.getDate()).isEqualTo(new Date(DateUtils.MILLIS_PER_DAY));
+			assertThat(resultEntity.getNames()).containsExactly("n1", "n2");
+			assertThat(resultEntity.getNumbers()).containsExactly(entry("one", 1));
+			assertThat(resultEntity.getChild().getName()).isEqualTo("child");
+
+			// Read the default value of a primitive field
+			preferences.reset("count");
+			assertThat(PreferenceFieldRegistry.load(preferences, new ReflectionTestEntity()).getCount()).isEqualTo(3);
+
+			// Copy the values
+			final ReflectionTestEntity copiedEntity = PreferenceFieldRegistry.copy(resultEntity,
+					new ReflectionTestEntity());
+			assertThat(copiedEntity.getCount()).isEqualTo(-5);
+			assertThat(copiedEntity.getNames()).containsExactly("n1", "n2");
+			assertThat(copiedEntity.getChild().getName()).isEqualTo("child");
+		} finally {
+			PreferenceFieldRegistry.setAccessStrategy(strategy);
+		}
+	}
+
 	/**
 	 * Tests that {@link SimpleTestEntity} is written and restored correctly from {@link PortletPreferences}.
 	 */
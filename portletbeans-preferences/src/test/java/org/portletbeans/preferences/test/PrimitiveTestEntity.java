@@ -0,0 +1,29 @@
+package org.portletbeans.preferences.test;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing primitive fields, which are loaded without boxing.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class PrimitiveTestEntity {
+
+	@PreferenceField(defaultValue = "42")
+	private int count;
+
+	private long size = 1L;
+
+	private double ratio;
+
+	@PreferenceField(defaultValue = "true")
+	private boolean enabled;
+
+}
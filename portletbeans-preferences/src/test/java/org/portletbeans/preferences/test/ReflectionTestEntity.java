@@ -0,0 +1,49 @@
+package org.portletbeans.preferences.test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.FieldAccessStrategy;
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+
+/**
+ * An entity for testing the {@link FieldAccessStrategy#REFLECTION} strategy.
+ *
+ * Only used by that test, as the strategy is fixed when the class is inspected for the first time.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+@Getter
+@Setter
+public class ReflectionTestEntity {
+
+	@PreferenceField(defaultValue = "3")
+	private int count;
+
+	private long size;
+
+	private double ratio;
+
+	private boolean enabled;
+
+	private char letter;
+
+	private String name;
+
+	private Date date = new Date(0);
+
+	private final List<String> names = new ArrayList<>();
+
+	private final Map<String, Integer> numbers = new LinkedHashMap<>();
+
+	private final ChildTestEntity child = new ChildTestEntity();
+
+}
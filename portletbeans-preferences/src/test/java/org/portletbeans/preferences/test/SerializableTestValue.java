@@ -0,0 +1,49 @@
+package org.portletbeans.preferences.test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.portletbeans.preferences.serializer.CompactSerializable;
+
+/**
+ * A value for testing the serializers of the {@link org.portletbeans.preferences.SerializableFieldHandler}.
+ *
+ * @author Tobias Liefke
+ */
+@CompactSerializable
+@Getter
+@Setter
+public class SerializableTestValue implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String name;
+
+	private int count;
+
+	private double ratio;
+
+	private TimeUnit unit;
+
+	private Date date;
+
+	private int[] numbers;
+
+	private final List<String> tags = new ArrayList<>();
+
+	private final Map<String, SerializableTestValue> children = new TreeMap<>();
+
+	private SerializableTestValue parent;
+
+	/** Initialized by the constructor, but not by the Java object serialization. */
+	private transient String transientName = "initial";
+
+}
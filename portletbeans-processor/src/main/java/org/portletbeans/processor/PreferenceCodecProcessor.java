@@ -0,0 +1,470 @@
+package org.portletbeans.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Generates a {@code PreferenceCodec} for every class with {@code PreferenceEntity} or {@code PreferenceField}
+ * annotations.
+ *
+ * The generated codec uses the same rules for keys, default values and handlers as the
+ * {@code PreferenceFieldRegistry}. Fields that are visible to the codec are accessed directly, all other fields with
+ * method handles that are created once, when the codec is initialized.
+ *
+ * @author Tobias Liefke
+ */
+@SupportedAnnotationTypes({ PreferenceCodecProcessor.PREFERENCE_ENTITY, PreferenceCodecProcessor.PREFERENCE_FIELD })
+public class PreferenceCodecProcessor extends AbstractProcessor {
+
+	/**
+	 * Saves the metadata of a field for the generated code.
+	 */
+	private static final class FieldDescription {
+
+		private final VariableElement field;
+
+		private final TypeElement declaringType;
+
+		private final String key;
+
+		private final String defaultValue;
+
+		private final boolean isFinal;
+
+		private final boolean isPrimitive;
+
+		private final boolean isVisible;
+
+		/** The name of the primitive type in the unboxed handler methods, {@code null} if the field is boxed. */
+		private final String unboxedName;
+
+		FieldDescription(final VariableElement field, final String key, final String defaultValue,
+				final boolean isVisible) {
+			this.field = field;
+			this.declaringType = (TypeElement) field.getEnclosingElement();
+			this.key = key;
+			this.defaultValue = defaultValue;
+			this.isFinal = field.getModifiers().contains(Modifier.FINAL);
+			this.isPrimitive = field.asType().getKind().isPrimitive();
+			this.isVisible = isVisible;
+			this.unboxedName = this.isFinal ? null : UNBOXED_NAMES.get(field.asType().getKind());
+		}
+
+		String getName() {
+			return this.field.getSimpleName().toString();
+		}
+
+	}
+
+	static final String PREFERENCE_ENTITY = "org.portletbeans.preferences.PreferenceEntity";
+
+	static final String PREFERENCE_FIELD = "org.portletbeans.preferences.PreferenceField";
+
+	private static final String TRANSIENT = "org.portletbeans.preferences.Transient";
+
+	private static final String CODEC_SUFFIX = "PreferenceCodec";
+
+	private static final String SUPPORT = "org.portletbeans.preferences.PreferenceCodecSupport";
+
+	private static final String HANDLER = "org.portletbeans.preferences.PreferenceFieldHandler";
+
+	private static final String FINAL_HANDLER = "org.portletbeans.preferences.FinalFieldHandler";
+
+	private static final String DEFAULT_HANDLER = "org.portletbeans.preferences.DefaultValueFieldHandler";
+
+	/** The primitive types that have a handler interface without boxing, see {@code UnboxedType} in the registry. */
+	private static final Map<TypeKind, String> UNBOXED_NAMES = new EnumMap<>(TypeKind.class);
+
+	static {
+		UNBOXED_NAMES.put(TypeKind.INT, "Int");
+		UNBOXED_NAMES.put(TypeKind.LONG, "Long");
+		UNBOXED_NAMES.put(TypeKind.DOUBLE, "Double");
+		UNBOXED_NAMES.put(TypeKind.BOOLEAN, "Boolean");
+	}
+
+	/** The name of the "Generated" annotation, which depends on the Java version. */
+	private static final String[] GENERATED_ANNOTATIONS = { "javax.annotation.Generated",
+			"javax.annotation.processing.Generated" };
+
+	private static String quote(final String value) {
+		if (value == null) {
+			return "null";
+		}
+		final StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < ' ' || c > '~') {
+				result.append(String.format("\\u%04x", (int) c));
+			} else {
+				result.append(c);
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	private static boolean isBlank(final String value) {
+		return value == null || value.trim().isEmpty();
+	}
+
+	private AnnotationMirror findAnnotation(final Element element, final String annotationName) {
+		for (final AnnotationMirror annotation : element.getAnnotationMirrors()) {
+			if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName()
+					.contentEquals(annotationName)) {
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+	private String findAnnotationValue(final AnnotationMirror annotation, final String name) {
+		if (annotation != null) {
+			for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+					.getElementValues().entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals(name)) {
+					return String.valueOf(entry.getValue().getValue());
+				}
+			}
+		}
+		return null;
+	}
+
+	private String findGeneratedAnnotation() {
+		for (final String name : GENERATED_ANNOTATIONS) {
+			if (this.processingEnv.getElementUtils().getTypeElement(name) != null) {
+				return name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves all preference fields of the given type, according to the rules of the registry.
+	 */
+	private List<FieldDescription> findPreferenceFields(final TypeElement type, final PackageElement codecPackage) {
+		final List<FieldDescription> fields;
+		final TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() == TypeKind.DECLARED) {
+			fields = findPreferenceFields((TypeElement) ((DeclaredType) superclass).asElement(), codecPackage);
+		} else {
+			// java.lang.Object
+			return new ArrayList<>();
+		}
+
+		final boolean isPreferenceEntity = findAnnotation(type, PREFERENCE_ENTITY) != null;
+		for (final VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			final Set<Modifier> modifiers = field.getModifiers();
+			if (modifiers.contains(Modifier.STATIC)) {
+				continue;
+			}
+			final AnnotationMirror preferenceField = findAnnotation(field, PREFERENCE_FIELD);
+			if (preferenceField != null || isPreferenceEntity && !modifiers.contains(Modifier.TRANSIENT)
+					&& findAnnotation(field, TRANSIENT) == null) {
+				final String key = findAnnotationValue(preferenceField, "value");
+				final String defaultValue = findAnnotationValue(preferenceField, "defaultValue");
+				fields.add(new FieldDescription(field, isBlank(key) ? field.getSimpleName().toString() : key,
+						isBlank(defaultValue) ? null : defaultValue, isVisible(field, codecPackage)));
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Generates the codec for the given bean class.
+	 */
+	private void generateCodec(final TypeElement type) throws IOException {
+		final PackageElement codecPackage = this.processingEnv.getElementUtils().getPackageOf(type);
+		final String binaryName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+		final String codecName = binaryName.substring(binaryName.lastIndexOf('.') + 1).replace('$', '_')
+				+ CODEC_SUFFIX;
+		final String typeName = this.processingEnv.getTypeUtils().erasure(type.asType()).toString();
+		final List<FieldDescription> fields = findPreferenceFields(type, codecPackage);
+
+		final String qualifiedCodecName = codecPackage.isUnnamed() ? codecName
+				: codecPackage.getQualifiedName() + "." + codecName;
+		try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedCodecName, type).openWriter();
+				PrintWriter out = new PrintWriter(writer)) {
+			if (!codecPackage.isUnnamed()) {
+				out.println("package " + codecPackage.getQualifiedName() + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * Loads and stores the preference fields of {@link " + typeName + "}.");
+			out.println(" */");
+			final String generated = findGeneratedAnnotation();
+			if (generated != null) {
+				out.println("@" + generated + "(\"" + PreferenceCodecProcessor.class.getName() + "\")");
+			}
+			out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			out.println("public final class " + codecName + " implements org.portletbeans.preferences.PreferenceCodec<"
+					+ typeName + "> {");
+			out.println();
+
+			// Static metadata, initialized once
+			for (int i = 0; i < fields.size(); i++) {
+				final FieldDescription field = fields.get(i);
+				final String fieldReference = field.declaringType.getQualifiedName() + ".class, "
+						+ quote(field.getName());
+				out.println("\tprivate static final " + HANDLER + " HANDLER_" + i + " = " + SUPPORT + ".handler("
+						+ fieldReference + ");");
+				if (!field.isFinal && field.defaultValue != null) {
+					out.println("\tprivate static final Object DEFAULT_" + i + " = " + SUPPORT + ".defaultValue(HANDLER_"
+							+ i + ", " + quote(field.defaultValue) + ");");
+				}
+				if (field.unboxedName != null) {
+					final String unboxedHandler = "org.portletbeans.preferences." + field.unboxedName
+							+ "PreferenceFieldHandler";
+					out.println("\tprivate static final " + unboxedHandler + " UNBOXED_" + i + " = HANDLER_" + i
+							+ " instanceof " + unboxedHandler + " ? (" + unboxedHandler + ") HANDLER_" + i
+							+ " : null;");
+				}
+				if (!field.isVisible) {
+					out.println("\tprivate static final java.lang.invoke.MethodHandle GETTER_" + i + " = " + SUPPORT
+							+ (field.unboxedName == null ? ".getter(" : ".unboxedGetter(") + fieldReference + ");");
+					if (!field.isFinal) {
+						out.println("\tprivate static final java.lang.invoke.MethodHandle SETTER_" + i + " = " + SUPPORT
+								+ (field.unboxedName == null ? ".setter(" : ".unboxedSetter(") + fieldReference + ");");
+					}
+				}
+				out.println();
+			}
+
+			writeLoad(out, type, typeName, fields);
+			out.println();
+			writeStore(out, type, typeName, fields);
+			out.println("}");
+		}
+	}
+
+	private String getFieldAccess(final FieldDescription field, final int index, final TypeElement type) {
+		if (!field.isVisible) {
+			return SUPPORT + ".get" + (field.unboxedName == null ? "" : field.unboxedName) + "(GETTER_" + index
+					+ ", instance)";
+		}
+		if (field.declaringType.equals(type)) {
+			return "instance." + field.getName();
+		}
+		return "((" + field.declaringType.getQualifiedName() + ") instance)." + field.getName();
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	private boolean isGeneratable(final TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			final TypeElement enclosingType = (TypeElement) element;
+			if (enclosingType.getModifiers().contains(Modifier.PRIVATE)
+					|| enclosingType.getNestingKind() == NestingKind.LOCAL
+					|| enclosingType.getNestingKind() == NestingKind.ANONYMOUS) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Indicates that the generated codec in the given package may access the given field directly.
+	 */
+	private boolean isVisible(final VariableElement field, final PackageElement codecPackage) {
+		if (field.getModifiers().contains(Modifier.PRIVATE)) {
+			return false;
+		}
+		// Type variables can't be assigned without a cast to the type variable
+		final TypeMirror fieldType = field.asType();
+		if (!this.processingEnv.getTypeUtils().isAssignable(this.processingEnv.getTypeUtils().erasure(fieldType),
+				fieldType)) {
+			return false;
+		}
+		final boolean samePackage = this.processingEnv.getElementUtils().getPackageOf(field).equals(codecPackage);
+		for (Element element = field; element instanceof TypeElement
+				|| element instanceof VariableElement; element = element.getEnclosingElement()) {
+			if (!element.getModifiers().contains(Modifier.PUBLIC) && !samePackage
+					|| element.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		final Set<TypeElement> types = new LinkedHashSet<>();
+		for (final TypeElement annotation : annotations) {
+			for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.FIELD) {
+					types.add((TypeElement) element.getEnclosingElement());
+				} else if (element instanceof TypeElement) {
+					types.add((TypeElement) element);
+				}
+			}
+		}
+		for (final TypeElement type : types) {
+			if (!isGeneratable(type)) {
+				this.processingEnv.getMessager().printMessage(Kind.NOTE,
+						"No preference codec generated, the class is not accessible or abstract", type);
+				continue;
+			}
+			try {
+				generateCodec(type);
+			} catch (final IOException e) {
+				this.processingEnv.getMessager().printMessage(Kind.ERROR,
+						"Could not generate preference codec: " + e, type);
+			}
+		}
+		// Other processors may handle our annotations as well
+		return false;
+	}
+
+	private String toValueType(final FieldDescription field) {
+		final TypeMirror fieldType = field.field.asType();
+		if (field.isPrimitive) {
+			return this.processingEnv.getTypeUtils().boxedClass((PrimitiveType) fieldType).getQualifiedName()
+					.toString();
+		}
+		return this.processingEnv.getTypeUtils().erasure(fieldType).toString();
+	}
+
+	private void writeLoad(final PrintWriter out, final TypeElement type, final String typeName,
+			final List<FieldDescription> fields) {
+		out.println("\t@Override");
+		out.println("\tpublic void load(final javax.portlet.PortletPreferences preferences, final String prefix, final "
+				+ typeName + " instance) {");
+		for (int i = 0; i < fields.size(); i++) {
+			final FieldDescription field = fields.get(i);
+			final String key = SUPPORT + ".key(prefix, " + quote(field.key) + ")";
+			out.println("\t\t// " + field.declaringType.getSimpleName() + "." + field.getName());
+			if (field.isFinal) {
+				out.println("\t\tfinal Object value" + i + " = " + getFieldAccess(field, i, type) + ";");
+				out.println("\t\tif (value" + i + " != null) {");
+				out.println("\t\t\t((" + FINAL_HANDLER + ") HANDLER_" + i + ").load(value" + i + ", preferences, " + key
+						+ ", " + quote(field.defaultValue) + ");");
+				out.println("\t\t}");
+			} else {
+				final boolean hasDefault = field.defaultValue != null;
+				if (field.unboxedName != null) {
+					// Load without boxing, if supported by the handler
+					final String defaultArguments = hasDefault
+							? "DEFAULT_" + i + " == null ? " + quote(field.defaultValue) + " : null, DEFAULT_" + i
+									+ " == null ? " + getFieldAccess(field, i, type) + " : (" + toValueType(field)
+									+ ") DEFAULT_" + i
+							: "null, " + getFieldAccess(field, i, type);
+					out.println("\t\tif (UNBOXED_" + i + " != null) {");
+					writeAssignment(out, "\t\t\t", field, i, type, "UNBOXED_" + i + ".load" + field.unboxedName
+							+ "(preferences, " + key + ", " + defaultArguments + ")");
+				}
+				if (hasDefault) {
+					// Use the default value that was parsed in advance, if it is immutable
+					out.println(field.unboxedName == null ? "\t\tif (DEFAULT_" + i + " != null) {"
+							: "\t\t} else if (DEFAULT_" + i + " != null) {");
+					writeLoadedValue(out, "\t\t\t", field, i, type, "((" + DEFAULT_HANDLER + ") HANDLER_" + i
+							+ ").loadOrDefault(preferences, " + key + ", DEFAULT_" + i + ")");
+				}
+				if (field.unboxedName != null || hasDefault) {
+					out.println("\t\t} else {");
+					writeLoadedValue(out, "\t\t\t", field, i, type,
+							"HANDLER_" + i + ".load(preferences, " + key + ", " + quote(field.defaultValue) + ")");
+					out.println("\t\t}");
+				} else {
+					writeLoadedValue(out, "\t\t", field, i, type,
+							"HANDLER_" + i + ".load(preferences, " + key + ", " + quote(field.defaultValue) + ")");
+				}
+			}
+		}
+		out.println("\t}");
+	}
+
+	/**
+	 * Writes the statement that sets the given value to the field of the instance.
+	 */
+	private void writeAssignment(final PrintWriter out, final String indent, final FieldDescription field,
+			final int index, final TypeElement type, final String value) {
+		if (!field.isVisible) {
+			out.println(indent + SUPPORT + ".set" + (field.unboxedName == null ? "" : field.unboxedName) + "(SETTER_"
+					+ index + ", instance, " + value + ");");
+		} else {
+			out.println(indent + getFieldAccess(field, index, type) + " = " + value + ";");
+		}
+	}
+
+	/**
+	 * Writes the statements that set the value of the given boxed expression to the field of the instance.
+	 */
+	private void writeLoadedValue(final PrintWriter out, final String indent, final FieldDescription field,
+			final int index, final TypeElement type, final String expression) {
+		out.println(indent + "final Object value" + index + " = " + expression + ";");
+		// The setters of invisible fields accept any object, except for unboxed setters
+		final String value = field.isVisible || field.unboxedName != null
+				? "(" + toValueType(field) + ") value" + index : "value" + index;
+		if (field.isPrimitive) {
+			// Dont' set null values for primitives (the default after initialization is usually enough)
+			out.println(indent + "if (value" + index + " != null) {");
+			writeAssignment(out, indent + "\t", field, index, type, value);
+			out.println(indent + "}");
+		} else {
+			writeAssignment(out, indent, field, index, type, value);
+		}
+	}
+
+	private void writeStore(final PrintWriter out, final TypeElement type, final String typeName,
+			final List<FieldDescription> fields) {
+		out.println("\t@Override");
+		out.println("\tpublic void store(final javax.portlet.PortletPreferences preferences, final String prefix, "
+				+ "final " + typeName + " instance) {");
+		for (int i = 0; i < fields.size(); i++) {
+			final FieldDescription field = fields.get(i);
+			final String arguments = "(preferences, " + SUPPORT + ".key(prefix, " + quote(field.key) + "), "
+					+ getFieldAccess(field, i, type) + ");";
+			out.println("\t\ttry {");
+			if (field.unboxedName != null) {
+				// Store without boxing, if supported by the handler
+				out.println("\t\t\tif (UNBOXED_" + i + " != null) {");
+				out.println("\t\t\t\tUNBOXED_" + i + ".store" + field.unboxedName + arguments);
+				out.println("\t\t\t} else {");
+				out.println("\t\t\t\tHANDLER_" + i + ".store" + arguments);
+				out.println("\t\t\t}");
+			} else {
+				out.println("\t\t\tHANDLER_" + i + ".store" + arguments);
+			}
+			out.println("\t\t} catch (final javax.portlet.ReadOnlyException e) {");
+			out.println("\t\t\tthrow new IllegalArgumentException(\"Could not store preference for field \" + "
+					+ quote(field.declaringType.getQualifiedName() + "." + field.getName()) + ", e);");
+			out.println("\t\t}");
+		}
+		out.println("\t}");
+	}
+
+}
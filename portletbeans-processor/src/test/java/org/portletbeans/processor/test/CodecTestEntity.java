@@ -0,0 +1,93 @@
+package org.portletbeans.processor.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.portletbeans.preferences.PreferenceEntity;
+import org.portletbeans.preferences.PreferenceField;
+import org.portletbeans.preferences.Transient;
+
+/**
+ * An entity for testing the generated codecs, with visible and private fields.
+ *
+ * @author Tobias Liefke
+ */
+@PreferenceEntity
+public class CodecTestEntity {
+
+	String name;
+
+	private int count;
+
+	@PreferenceField(value = "renamed", defaultValue = "42")
+	private long number;
+
+	@PreferenceField(defaultValue = "0.5")
+	double ratio;
+
+	boolean enabled;
+
+	@PreferenceField(defaultValue = "MINUTES")
+	TimeUnit unit;
+
+	@PreferenceField(defaultValue = "text")
+	StringBuilder text;
+
+	final List<String> values = new ArrayList<>();
+
+	private CodecTestEntity child;
+
+	transient String transient1;
+
+	@Transient
+	String transient2;
+
+	/**
+	 * The number of elements.
+	 *
+	 * @return the count
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * The number of elements.
+	 *
+	 * @param count
+	 *            the count to set
+	 */
+	public void setCount(final int count) {
+		this.count = count;
+	}
+
+	/**
+	 * A number with a default value.
+	 *
+	 * @return the number
+	 */
+	public long getNumber() {
+		return this.number;
+	}
+
+	/**
+	 * A nested entity.
+	 *
+	 * @return the child
+	 */
+	public CodecTestEntity getChild() {
+		return this.child;
+	}
+
+	/**
+	 * A nested entity.
+	 *
+	 * @param child
+	 *            the child to set
+	 */
+	public void setChild(final CodecTestEntity child) {
+		this.child = child;
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.portletbeans.processor.test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.portlet.PortletPreferences;
+import javax.portlet.ReadOnlyException;
+
+import org.junit.Test;
+import org.portletbeans.preferences.PreferenceCodec;
+import org.portletbeans.preferences.PreferenceFieldRegistry;
+
+/**
+ * Tests the codecs generated by the {@code PreferenceCodecProcessor}.
+ *
+ * @author Tobias Liefke
+ */
+// CHECKSTYLE OFF: MagicNumber
+public class PreferenceCodecTest {
+
+	/**
+	 * Minimal implementation of {@link PortletPreferences}.
+	 */
+	private static final class MapPreferences implements PortletPreferences {
+
+		private final Map<String, String[]> map = new HashMap<>();
+
+		@Override
+		public Map<String, String[]> getMap() {
+			return Collections.unmodifiableMap(this.map);
+		}
+
+		@Override
+		public Enumeration<String> getNames() {
+			return Collections.enumeration(this.map.keySet());
+		}
+
+		@Override
+		public String getValue(final String key, final String defaultValue) {
+			final String[] values = this.map.get(key);
+			return values == null || values.length == 0 ? defaultValue : values[0];
+		}
+
+		@Override
+		public String[] getValues(final String key, final String[] defaultValues) {
+			final String[] values = this.map.get(key);
+			return values == null ? defaultValues : values;
+		}
+
+		@Override
+		public boolean isReadOnly(final String key) {
+			return false;
+		}
+
+		@Override
+		public void reset(final String key) {
+			this.map.remove(key);
+		}
+
+		@Override
+		public void setValue(final String key, final String value) {
+			this.map.put(key, new String[] { value });
+		}
+
+		@Override
+		public void setValues(final String key, final String[] values) {
+			this.map.put(key, values);
+		}
+
+		@Override
+		public void store() {
+			// Nothing to do
+		}
+
+	}
+
+	/**
+	 * Tests that a codec was generated for {@link CodecTestEntity}.
+	 *
+	 * @throws ClassNotFoundException
+	 *             if the processor did not generate the codec
+	 */
+	@Test
+	public void testGeneratedCodec() throws ClassNotFoundException {
+		final Class<?> codecClass = Class
+				.forName(CodecTestEntity.class.getName() + PreferenceCodec.CODEC_SUFFIX);
+		assertThat(PreferenceCodec.class.isAssignableFrom(codecClass)).isTrue();
+	}
+
+	/**
+	 * Tests that {@link CodecTestEntity} is written and restored correctly with the generated codec.
+	 *
+	 * @throws ReadOnlyException
+	 *             should not happen
+	 */
+	@Test
+	public void testLoadAndStore() throws ReadOnlyException {
+		final CodecTestEntity testEntity = new CodecTestEntity();
+		testEntity.name = "Testing";
+		testEntity.setCount(7890);
+		testEntity.enabled = true;
+		testEntity.values.addAll(Arrays.asList("s2", "s1"));
+		testEntity.setChild(new CodecTestEntity());
+		testEntity.getChild().name = "child";
+		testEntity.transient1 = "transient1";
+		testEntity.transient2 = "transient2";
+
+		// Store and test the preferences
+		final PortletPreferences preferences = new MapPreferences();
+		PreferenceFieldRegistry.store(preferences, testEntity);
+
+		assertThat(preferences.getValue("name", "")).isEqualTo("Testing");
+		assertThat(preferences.getValue("count", "")).isEqualTo("7890");
+		assertThat(preferences.getValue("renamed", "")).isEqualTo("0");
+		assertThat(preferences.getValue("ratio", "")).isEqualTo("0.0");
+		assertThat(preferences.getValue("enabled", "")).isEqualTo("true");
+		assertThat(preferences.getValue("values.length", "")).isEqualTo("2");
+		assertThat(preferences.getValue("child.name", "")).isEqualTo("child");
+		assertThat(preferences.getMap()).doesNotContainKey("transient1").doesNotContainKey("transient2");
+
+		// Load the preferences
+		preferences.reset("renamed");
+		preferences.reset("ratio");
+		preferences.reset("unit");
+		preferences.reset("text");
+		final CodecTestEntity resultEntity = PreferenceFieldRegistry.load(preferences, new CodecTestEntity());
+
+		assertThat(resultEntity.name).isEqualTo(testEntity.name);
+		assertThat(resultEntity.getCount()).isEqualTo(testEntity.getCount());
+		assertThat(resultEntity.getNumber()).isEqualTo(42L);
+		assertThat(resultEntity.ratio).isEqualTo(0.5);
+		assertThat(resultEntity.enabled).isTrue();
+		assertThat(resultEntity.unit).isSameAs(TimeUnit.MINUTES);
+		assertThat(resultEntity.text.toString()).isEqualTo("text");
+
+		// Mutable default values are parsed for every load
+		final CodecTestEntity secondEntity = PreferenceFieldRegistry.load(preferences, new CodecTestEntity());
+		assertThat(secondEntity.text).isNotSameAs(resultEntity.text);
+		assertThat(resultEntity.values).containsExactly("s2", "s1");
+		assertThat(resultEntity.getChild().name).isEqualTo("child");
+		assertThat(resultEntity.getChild().getChild()).isNull();
+		assertThat(resultEntity.transient1).isNull();
+		assertThat(resultEntity.transient2).isNull();
+	}
+
+}